@@ -0,0 +1,110 @@
+package edu.miami.cse.reversi.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.Square;
+
+/**
+ * Benchmarks of the individual {@link Board} operations over a corpus of
+ * midgame or endgame positions. Each invocation works on the next position of
+ * the corpus, so branch predictors cannot learn a single position.
+ *
+ * Board memoizes its possible squares and completion flag, so the benchmarks of
+ * those methods call them on a freshly played board and include the cost of
+ * {@link Board#play(Square)}; subtract {@link #play()} to isolate them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+  @Param({ "midgame", "endgame" })
+  public String corpus;
+
+  private Board[] boards;
+  private Square[] moves;
+  private Board[] passing;
+  private Board[] copies;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<Board> positions = this.corpus.equals("midgame") ? Positions.midgame() : Positions.endgame();
+    this.boards = positions.toArray(new Board[0]);
+    this.moves = Positions.moves(positions).toArray(new Square[0]);
+    this.passing = Positions.passing().toArray(new Board[0]);
+    // Equal but distinct boards, so equals() cannot short-circuit on identity
+    this.copies = new Board[this.boards.length];
+    List<Board> again = this.corpus.equals("midgame") ? Positions.midgame() : Positions.endgame();
+    for (int i = 0; i < this.copies.length; ++i) {
+      this.copies[i] = again.get(i);
+    }
+  }
+
+  private int nextIndex() {
+    int index = this.next;
+    this.next = (index + 1) % this.boards.length;
+    return index;
+  }
+
+  @Benchmark
+  public Board newBoard() {
+    return new Board();
+  }
+
+  @Benchmark
+  public Board play() {
+    int i = this.nextIndex();
+    return this.boards[i].play(this.moves[i]);
+  }
+
+  @Benchmark
+  public void playThenGetCurrentPossibleSquares(Blackhole blackhole) {
+    int i = this.nextIndex();
+    for (Square square : this.boards[i].play(this.moves[i]).getCurrentPossibleSquares()) {
+      blackhole.consume(square);
+    }
+  }
+
+  @Benchmark
+  public boolean playThenIsComplete() {
+    int i = this.nextIndex();
+    return this.boards[i].play(this.moves[i]).isComplete();
+  }
+
+  @Benchmark
+  public Board pass() {
+    return this.passing[this.nextIndex() % this.passing.length].pass();
+  }
+
+  @Benchmark
+  public int hashCodeOf() {
+    return this.boards[this.nextIndex()].hashCode();
+  }
+
+  @Benchmark
+  public boolean equalsCopy() {
+    int i = this.nextIndex();
+    return this.boards[i].equals(this.copies[i]);
+  }
+
+}
@@ -0,0 +1,113 @@
+package edu.miami.cse.reversi.bench;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.Reversi;
+import edu.miami.cse.reversi.Square;
+import edu.miami.cse.reversi.Strategy;
+import edu.miami.cse.reversi.StrategyTimedOutException;
+import edu.miami.cse.reversi.strategy.RandomStrategy;
+
+/**
+ * Whole-game throughput with {@link RandomStrategy} on both sides, and
+ * depth-limited perft from the midgame corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+  @Param({ "3" })
+  public int perftDepth;
+
+  private Strategy random;
+  private ExecutorService executor;
+  private Board[] midgame;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.random = new RandomStrategy();
+    this.executor = Reversi.newStrategyExecutor();
+    List<Board> positions = Positions.midgame();
+    this.midgame = positions.toArray(new Board[0]);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * A random game played directly on the calling thread: the cost of the Board
+   * operations of a full game.
+   */
+  @Benchmark
+  public Board randomGame() {
+    Board board = new Board();
+    while (!board.isComplete()) {
+      if (board.getCurrentPossibleSquares().isEmpty()) {
+        board = board.pass();
+      } else {
+        board = board.play(this.random.chooseSquare(board));
+      }
+    }
+    return board;
+  }
+
+  /**
+   * A random game played through {@link Reversi#play(Board)}: adds the cost of
+   * handing every move to a strategy thread.
+   */
+  @Benchmark
+  public Board randomGameThroughReversi() throws StrategyTimedOutException {
+    Reversi reversi = new Reversi(this.random, this.random, 1, TimeUnit.SECONDS, this.executor);
+    return reversi.play(new Board());
+  }
+
+  @Benchmark
+  public long perft() {
+    Board board = this.midgame[this.next];
+    this.next = (this.next + 1) % this.midgame.length;
+    return perft(board, this.perftDepth);
+  }
+
+  /**
+   * Counts the positions reachable in exactly depth moves, counting a pass as a
+   * move and a finished game as a leaf.
+   */
+  private static long perft(Board board, int depth) {
+    if (depth == 0 || board.isComplete()) {
+      return 1;
+    }
+    if (board.getCurrentPossibleSquares().isEmpty()) {
+      return perft(board.pass(), depth - 1);
+    }
+    long nodes = 0;
+    for (Square square : board.getCurrentPossibleSquares()) {
+      nodes += perft(board.play(square), depth - 1);
+    }
+    return nodes;
+  }
+
+}
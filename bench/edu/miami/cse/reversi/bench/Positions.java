@@ -0,0 +1,81 @@
+package edu.miami.cse.reversi.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.Square;
+
+/**
+ * Reproducible corpora of Reversi positions for the benchmarks, taken from
+ * random games with a fixed seed.
+ */
+public final class Positions {
+
+  /**
+   * The number of positions in each corpus.
+   */
+  public static final int CORPUS_SIZE = 256;
+
+  private Positions() {
+  }
+
+  /**
+   * @return Positions where 20 pieces have been placed and the current player
+   *         has at least one possible move.
+   */
+  public static List<Board> midgame() {
+    return sample(20, false);
+  }
+
+  /**
+   * @return Positions with 16 empty squares where the current player has at
+   *         least one possible move.
+   */
+  public static List<Board> endgame() {
+    return sample(44, false);
+  }
+
+  /**
+   * @return Positions where the current player must pass.
+   */
+  public static List<Board> passing() {
+    return sample(-1, true);
+  }
+
+  /**
+   * Plays random games and keeps one position per game: the first with the
+   * given number of pieces placed, or the first where a pass is required.
+   */
+  private static List<Board> sample(int piecesPlaced, boolean passing) {
+    Random random = new Random(20140401L);
+    List<Board> positions = new ArrayList<>();
+    while (positions.size() < CORPUS_SIZE) {
+      Board board = new Board();
+      while (!board.isComplete()) {
+        List<Square> squares = new ArrayList<>(board.getCurrentPossibleSquares());
+        if (passing ? squares.isEmpty() : (board.getSquareOwners().size() - 4 == piecesPlaced && !squares.isEmpty())) {
+          positions.add(board);
+          break;
+        }
+        board = squares.isEmpty() ? board.pass() : board.play(squares.get(random.nextInt(squares.size())));
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * @return A possible square for each position, chosen with a fixed seed.
+   */
+  public static List<Square> moves(List<Board> positions) {
+    Random random = new Random(7L);
+    List<Square> moves = new ArrayList<>();
+    for (Board board : positions) {
+      List<Square> squares = new ArrayList<>(board.getCurrentPossibleSquares());
+      moves.add(squares.get(random.nextInt(squares.size())));
+    }
+    return moves;
+  }
+
+}
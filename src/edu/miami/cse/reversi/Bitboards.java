@@ -0,0 +1,163 @@
+package edu.miami.cse.reversi;
+
+/**
+ * Bit-level operations on 8x8 Reversi positions. A position is stored as one
+ * <code>long</code> per player, where bit <code>row * 8 + column</code> is set
+ * if that player occupies the square at (row, column).
+ */
+public final class Bitboards {
+
+	/**
+	 * The number of rows (= the number of columns) of a bitboard.
+	 */
+	public static final int SIZE = 8;
+
+	/**
+	 * The number of squares on a bitboard.
+	 */
+	public static final int SQUARES = SIZE * SIZE;
+
+	/**
+	 * All squares in column 0.
+	 */
+	public static final long FIRST_COLUMN = 0x0101010101010101L;
+
+	/**
+	 * All squares in column 7.
+	 */
+	public static final long LAST_COLUMN = 0x8080808080808080L;
+
+	// Squares outside columns 0 and 7. Masking the opponent's pieces with this
+	// stops runs in the horizontal and diagonal directions from wrapping around
+	// to the next row.
+	private static final long INNER_COLUMNS = ~(FIRST_COLUMN | LAST_COLUMN);
+
+	private Bitboards() {
+	}
+
+	/**
+	 * @return The bit index of the given square, or -1 if the square is not on an
+	 *         8x8 board.
+	 */
+	public static int index(Square square) {
+		return square.getIndex();
+	}
+
+	/**
+	 * @return The shared square at the given bit index. See
+	 *         {@link Square#of(int)}.
+	 */
+	public static Square square(int index) {
+		return Square.of(index);
+	}
+
+	/**
+	 * @param own
+	 *          The squares occupied by the player to move.
+	 * @param opponent
+	 *          The squares occupied by the opponent.
+	 * @return The empty squares where the player to move would capture at least
+	 *         one opponent piece.
+	 */
+	public static long moves(long own, long opponent) {
+		long inner = opponent & INNER_COLUMNS;
+		return (movesLeft(own, inner, 1) | movesRight(own, inner, 1) | movesLeft(own, opponent, 8)
+				| movesRight(own, opponent, 8) | movesLeft(own, inner, 7) | movesRight(own, inner, 7)
+				| movesLeft(own, inner, 9) | movesRight(own, inner, 9)) & ~(own | opponent);
+	}
+
+	/**
+	 * Equivalent to <code>moves(own, opponent) != 0</code>, but stops at the
+	 * first direction that yields a legal square.
+	 * 
+	 * @param own
+	 *          The squares occupied by the player to move.
+	 * @param opponent
+	 *          The squares occupied by the opponent.
+	 * @return True if the player to move has at least one legal square.
+	 */
+	public static boolean hasMoves(long own, long opponent) {
+		long empty = ~(own | opponent);
+		long inner = opponent & INNER_COLUMNS;
+		return (movesLeft(own, opponent, 8) & empty) != 0 || (movesRight(own, opponent, 8) & empty) != 0
+				|| (movesLeft(own, inner, 1) & empty) != 0 || (movesRight(own, inner, 1) & empty) != 0
+				|| (movesLeft(own, inner, 7) & empty) != 0 || (movesRight(own, inner, 7) & empty) != 0
+				|| (movesLeft(own, inner, 9) & empty) != 0 || (movesRight(own, inner, 9) & empty) != 0;
+	}
+
+	/**
+	 * The squares one step past a run of opponent pieces that starts next to an
+	 * own piece, for one direction towards higher bit indices. The caller masks
+	 * out occupied squares.
+	 */
+	private static long movesLeft(long own, long opponent, int shift) {
+		long run = opponent & own << shift;
+		run |= opponent & run << shift;
+		run |= opponent & run << shift;
+		run |= opponent & run << shift;
+		run |= opponent & run << shift;
+		run |= opponent & run << shift;
+		return run << shift;
+	}
+
+	/**
+	 * Like {@link #movesLeft(long, long, int)}, towards lower bit indices.
+	 */
+	private static long movesRight(long own, long opponent, int shift) {
+		long run = opponent & own >>> shift;
+		run |= opponent & run >>> shift;
+		run |= opponent & run >>> shift;
+		run |= opponent & run >>> shift;
+		run |= opponent & run >>> shift;
+		run |= opponent & run >>> shift;
+		return run >>> shift;
+	}
+
+	/**
+	 * @param index
+	 *          The bit index of an empty square where the player to move places
+	 *          a piece.
+	 * @param own
+	 *          The squares occupied by the player to move.
+	 * @param opponent
+	 *          The squares occupied by the opponent.
+	 * @return The opponent pieces captured by the placement. Zero if the
+	 *         placement captures nothing.
+	 */
+	public static long flips(int index, long own, long opponent) {
+		long placed = 1L << index;
+		long inner = opponent & INNER_COLUMNS;
+		return flipsLeft(placed, own, inner, 1) | flipsRight(placed, own, inner, 1)
+				| flipsLeft(placed, own, opponent, 8) | flipsRight(placed, own, opponent, 8)
+				| flipsLeft(placed, own, inner, 7) | flipsRight(placed, own, inner, 7)
+				| flipsLeft(placed, own, inner, 9) | flipsRight(placed, own, inner, 9);
+	}
+
+	/**
+	 * The run of opponent pieces next to the placed piece in one direction
+	 * towards higher bit indices, if an own piece closes the run; otherwise zero.
+	 */
+	private static long flipsLeft(long placed, long own, long opponent, int shift) {
+		long run = opponent & placed << shift;
+		run |= opponent & run << shift;
+		run |= opponent & run << shift;
+		run |= opponent & run << shift;
+		run |= opponent & run << shift;
+		run |= opponent & run << shift;
+		return (own & run << shift) != 0 ? run : 0L;
+	}
+
+	/**
+	 * Like {@link #flipsLeft(long, long, long, int)}, towards lower bit indices.
+	 */
+	private static long flipsRight(long placed, long own, long opponent, int shift) {
+		long run = opponent & placed >>> shift;
+		run |= opponent & run >>> shift;
+		run |= opponent & run >>> shift;
+		run |= opponent & run >>> shift;
+		run |= opponent & run >>> shift;
+		run |= opponent & run >>> shift;
+		return (own & run >>> shift) != 0 ? run : 0L;
+	}
+
+}
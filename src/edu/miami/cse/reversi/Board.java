@@ -1,127 +1,120 @@
 package edu.miami.cse.reversi;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 
 import org.pcollections.HashTreePMap;
-import org.pcollections.HashTreePSet;
 import org.pcollections.PMap;
 import org.pcollections.PSequence;
-import org.pcollections.PSet;
 import org.pcollections.TreePVector;
 
-import com.google.common.base.Function;
-import com.google.common.collect.Ordering;
-
 /**
  * A single state of a Reversi board. It records which pieces have been played
  * so far by which players, which pieces have been captured, and who the next
  * player to play should be.
+ * 
+ * The position is kept as one bitboard per player (see {@link Bitboards}), so
+ * finding possible squares and playing a piece take a handful of bit
+ * operations rather than a scan over every square.
  */
 public class Board {
+	// Never a valid move mask, since the initial pieces always occupy squares
+	private static final long UNKNOWN_MOVES = -1L;
+	private static final int COMPLETE = 1;
+	private static final int INCOMPLETE = 2;
+
 	private int size;
 	private Player player;
-	private PMap<Square, Player> owners;
+	private long black;
+	private long white;
+	private long zobristKey;
 	private PSequence<Move> moves;
-	private PMap<Square, PSet<Square>> possibleSquares;
+	// Legal moves are only generated once someone asks for them
+	private volatile long possibleMoves = UNKNOWN_MOVES;
+	private Set<Square> possibleSquares;
+	// 0 until isComplete() has been answered, then COMPLETE or INCOMPLETE
+	private int completion;
+	private int blackCount;
+	private int whiteCount;
+	// Built on demand from the counts, like owners
 	private PMap<Player, Integer> playerSquareCounts;
+	// Built on demand from the bitboards; immutable, so racy publication is safe
+	private PMap<Square, Player> owners;
 
 	/**
 	 * Creates an 8x8 Reversi board with the standard initial configuration of
 	 * {@link Player#BLACK} and {@link Player#WHITE} pieces.
 	 */
 	public Board() {
-		this(8, Player.BLACK, TreePVector.<Move> empty(), getInitialOwners(8), getInitialPlayerSquareCounts());
+		this(Player.BLACK, TreePVector.<Move> empty(), getInitialBlack(), getInitialWhite(),
+				Zobrist.hash(getInitialBlack(), getInitialWhite(), Player.BLACK), 2, 2);
 	}
 
 
 	/**
 	 * Low-level constructor. Intended only for internal use.
 	 */
-	private Board(int size, Player player, PSequence<Move> moves, PMap<Square, Player> owners, PMap<Player, Integer> playerSquareCounts) {
-		this.size = size;
+	private Board(Player player, PSequence<Move> moves, long black, long white, long zobristKey,
+			int blackCount, int whiteCount) {
+		this.size = Bitboards.SIZE;
 		this.player = player;
 		this.moves = moves;
-		this.owners = owners;
-		this.possibleSquares = HashTreePMap.empty();
-		this.playerSquareCounts = playerSquareCounts;
-		// Determine the possible moves
-		Player opponent = this.player.opponent();
-		int[][] directions =
-				new int[][] { { 0, 1 }, { 1, 1 }, { 1, 0 }, { 1, -1 }, { 0, -1 }, { -1, -1 }, { -1, 0 },
-			{ -1, 1 } };
-			for (int row = 0; row < this.size; ++row) {
-				for (int column = 0; column < this.size; ++column) {
-					if (this.owners.get(new Square(row, column)) == null) {
-						PSet<Square> allCaptures = HashTreePSet.empty();
-						for (int[] direction : directions) {
-							int rowStep = direction[0];
-							int columnStep = direction[1];
-							int r = row + rowStep;
-							int c = column + columnStep;
-							PSet<Square> captures = HashTreePSet.empty();
-							if (this.hasOwner(r, c, opponent)) {
-								captures = captures.plus(new Square(r, c));
-								r += rowStep;
-								c += columnStep;
-								while (this.hasOwner(r, c, opponent)) {
-									captures = captures.plus(new Square(r, c));
-									r += rowStep;
-									c += columnStep;
-								}
-								if (this.hasOwner(r, c, this.player)) {
-									allCaptures = allCaptures.plusAll(captures);
-								}
-							}
-						}
-						if (!allCaptures.isEmpty()) {
-							this.possibleSquares = this.possibleSquares.plus(new Square(row, column), allCaptures);
-						}
-					}
-				}
-			}
+		this.black = black;
+		this.white = white;
+		this.zobristKey = zobristKey;
+		this.blackCount = blackCount;
+		this.whiteCount = whiteCount;
 	}
 
 	/**
-	 * Utility method for simultaneously checking bounds and owner. Intended only
-	 * for internal use.
+	 * @return The bitboard of squares the current player may choose from,
+	 *         generated on first use and memoized. Intended only for internal
+	 *         use.
 	 */
-	private boolean hasOwner(int row, int column, Player owner) {
-		return 0 <= row && row < this.size && 0 <= column && column < this.size
-				&& this.owners.get(new Square(row, column)) == owner;
+	long getPossibleMoves() {
+		long possibleMoves = this.possibleMoves;
+		if (possibleMoves == UNKNOWN_MOVES) {
+			possibleMoves = Bitboards.moves(this.getBits(this.player), this.getBits(this.player.opponent()));
+			this.possibleMoves = possibleMoves;
+		}
+		return possibleMoves;
 	}
 
 	/**
-	 * Utility method for generating the initial board configuration. Intended only
-	 * for internal use.
+	 * @return The bitboard of squares occupied by the given player. Intended only
+	 *         for internal use.
 	 */
-	private static PMap<Square, Player> getInitialOwners(int size) {
-		PMap<Square, Player> owners = HashTreePMap.empty();
-		int mid = size / 2;
-		owners = owners.plus(new Square(mid - 1, mid - 1), Player.WHITE);
-		owners = owners.plus(new Square(mid - 1, mid), Player.BLACK);
-		owners = owners.plus(new Square(mid, mid - 1), Player.BLACK);
-		owners = owners.plus(new Square(mid, mid), Player.WHITE);
-		return owners;
+	long getBits(Player owner) {
+		return owner == Player.BLACK ? this.black : this.white;
 	}
 
-	private static PMap<Player, Integer> getInitialPlayerSquareCounts() {
-		return HashTreePMap.<Player, Integer> empty().plus(Player.BLACK, 2).plus(Player.WHITE, 2);
+	/**
+	 * Utility methods for generating the initial board configuration. Intended
+	 * only for internal use.
+	 */
+	private static long getInitialBlack() {
+		int mid = Bitboards.SIZE / 2;
+		return 1L << ((mid - 1) * Bitboards.SIZE + mid) | 1L << (mid * Bitboards.SIZE + mid - 1);
+	}
+
+	private static long getInitialWhite() {
+		int mid = Bitboards.SIZE / 2;
+		return 1L << ((mid - 1) * Bitboards.SIZE + mid - 1) | 1L << (mid * Bitboards.SIZE + mid);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.size, this.owners);
+		// equals() ignores the player to move, so the hash must as well
+		long key = this.player == Player.WHITE ? this.zobristKey ^ Zobrist.SIDE : this.zobristKey;
+		return (int) (key ^ (key >>> 32));
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof Board) {
 			Board that = (Board) obj;
-			return this.size == that.size && Objects.equals(this.owners, that.owners);
+			return this.size == that.size && this.black == that.black && this.white == that.white;
 		}
 		return false;
 	}
@@ -131,10 +124,10 @@ public class Board {
 		StringBuilder builder = new StringBuilder();
 		for (int row = 0; row < this.size; ++row) {
 			for (int col = 0; col < this.size; ++col) {
-				Player owner = this.owners.get(new Square(row, col));
-				if (owner == Player.WHITE) {
+				long bit = 1L << (row * this.size + col);
+				if ((this.white & bit) != 0) {
 					builder.append('W');
-				} else if (owner == Player.BLACK) {
+				} else if ((this.black & bit) != 0) {
 					builder.append('B');
 				} else {
 					builder.append('_');
@@ -152,6 +145,61 @@ public class Board {
 		return this.size;
 	}
 
+	/**
+	 * @return The Zobrist key of this board, covering the pieces of both players
+	 *         and the player to move. See {@link Zobrist}.
+	 */
+	public long getZobristKey() {
+		return this.zobristKey;
+	}
+
+	/**
+	 * @return The symmetry that maps this board to its canonical form, the same
+	 *         form for all 8 rotations and reflections of the board. A square
+	 *         of the canonical form maps back to this board by the symmetry's
+	 *         {@link Symmetry#inverse()}.
+	 */
+	public Symmetry getCanonicalSymmetry() {
+		return Symmetry.canonical(this.black, this.white);
+	}
+
+	/**
+	 * @return The Zobrist key of this board's canonical form, for caches that
+	 *         should treat every orientation of a position alike. Unlike
+	 *         {@link #getCanonicalForm()}, this creates no board.
+	 */
+	public long getCanonicalKey() {
+		return Symmetry.canonicalKey(this.black, this.white, this.player);
+	}
+
+	/**
+	 * @return This board in its canonical orientation. See
+	 *         {@link #getCanonicalSymmetry()}.
+	 */
+	public Board getCanonicalForm() {
+		return this.transform(this.getCanonicalSymmetry());
+	}
+
+	/**
+	 * @param symmetry
+	 *          The rotation or reflection to apply.
+	 * @return The image of this board under the symmetry, with the same player
+	 *         to move and the moves so far mapped the same way.
+	 */
+	public Board transform(Symmetry symmetry) {
+		if (symmetry == Symmetry.IDENTITY) {
+			return this;
+		}
+		PSequence<Move> newMoves = TreePVector.empty();
+		for (Move move : this.moves) {
+			newMoves = newMoves.plus(Move.of(symmetry.apply(move.getSquare()), move.getPlayer()));
+		}
+		long newBlack = symmetry.apply(this.black);
+		long newWhite = symmetry.apply(this.white);
+		return new Board(this.player, newMoves, newBlack, newWhite, Zobrist.hash(newBlack, newWhite, this.player),
+				this.blackCount, this.whiteCount);
+	}
+
 	/**
 	 * @return The moves made by the players so far. That is, each square where a
 	 *         piece has been placed along with the player who played the piece
@@ -165,14 +213,50 @@ public class Board {
 	 * @return A mapping from squares to the players currently occupying them.
 	 */
 	public Map<Square, Player> getSquareOwners() {
-		return this.owners;
+		PMap<Square, Player> owners = this.owners;
+		if (owners == null) {
+			owners = HashTreePMap.empty();
+			for (Square square : new SquareSet(this.black)) {
+				owners = owners.plus(square, Player.BLACK);
+			}
+			for (Square square : new SquareSet(this.white)) {
+				owners = owners.plus(square, Player.WHITE);
+			}
+			this.owners = owners;
+		}
+		return owners;
 	}
 
 	/**
-	 * @return The count of squares currently occupied by each player.
+	 * @return The count of squares currently occupied by each player. Prefer
+	 *         {@link #getSquareCount(Player)}, which does not allocate.
 	 */
 	public Map<Player, Integer> getPlayerSquareCounts() {
-		return this.playerSquareCounts;
+		PMap<Player, Integer> counts = this.playerSquareCounts;
+		if (counts == null) {
+			counts = HashTreePMap.<Player, Integer> empty().plus(Player.BLACK, this.blackCount).plus(Player.WHITE,
+					this.whiteCount);
+			this.playerSquareCounts = counts;
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of squares currently occupied by the given player.
+	 */
+	public int getSquareCount(Player owner) {
+		return owner == Player.BLACK ? this.blackCount : this.whiteCount;
+	}
+
+	/**
+	 * @return The number of squares occupied by the given player minus the number
+	 *         occupied by their opponent. After {@link #isComplete()} returns
+	 *         true, this is the player's final score: positive for a win,
+	 *         negative for a loss and 0 for a draw.
+	 */
+	public int getDiscDifferential(Player owner) {
+		int differential = this.blackCount - this.whiteCount;
+		return owner == Player.BLACK ? differential : -differential;
 	}
 
 	/**
@@ -180,27 +264,29 @@ public class Board {
 	 *         otherwise.
 	 */
 	public boolean isComplete() {
-		return this.possibleSquares.isEmpty() && this.pass().possibleSquares.isEmpty();
+		int completion = this.completion;
+		if (completion == 0) {
+			long own = this.getBits(this.player);
+			long opponent = this.getBits(this.player.opponent());
+			long possibleMoves = this.possibleMoves;
+			boolean playerCanMove =
+					possibleMoves == UNKNOWN_MOVES ? Bitboards.hasMoves(own, opponent) : possibleMoves != 0L;
+			completion = playerCanMove || Bitboards.hasMoves(opponent, own) ? INCOMPLETE : COMPLETE;
+			this.completion = completion;
+		}
+		return completion == COMPLETE;
 	}
 
 	/**
-	 * @return The winner on this Reversi board. Only valid after
-	 *         {@link #isComplete()} returns true.
+	 * @return The winner on this Reversi board, or null for a draw. Only valid
+	 *         after {@link #isComplete()} returns true.
 	 */
 	public Player getWinner() {
 		if (!this.isComplete()) {
 			throw new IllegalStateException("getWinner cannot be called until the game is complete");
 		}
-		Ordering<Player> bySquares = Ordering.natural().onResultOf(new Function<Player, Integer>() {
-			@Override
-			public Integer apply(Player input) {
-				return getPlayerSquareCounts().get(input);
-			}
-		});
-		Player winner = bySquares.max(Arrays.asList(Player.values()));
-		return this.playerSquareCounts.get(winner) == this.playerSquareCounts.get(winner.opponent())
-				? null
-						: winner;
+		int differential = this.blackCount - this.whiteCount;
+		return differential > 0 ? Player.BLACK : differential < 0 ? Player.WHITE : null;
 	}
 
 	/**
@@ -214,7 +300,12 @@ public class Board {
 	 * @return The possible valid moves that the current player may choose from.
 	 */
 	public Set<Square> getCurrentPossibleSquares() {
-		return this.possibleSquares.keySet();
+		Set<Square> possibleSquares = this.possibleSquares;
+		if (possibleSquares == null) {
+			possibleSquares = new SquareSet(this.getPossibleMoves());
+			this.possibleSquares = possibleSquares;
+		}
+		return possibleSquares;
 	}
 
 	/**
@@ -230,28 +321,31 @@ public class Board {
 	 *         current player now set to the opponent.
 	 */
 	public Board play(Square square) {
-		Player existingPlayer = this.owners.get(square);
-		if (existingPlayer != null) {
+		int index = Bitboards.index(square);
+		long placed = index < 0 ? 0L : 1L << index;
+		if (((this.black | this.white) & placed) != 0) {
+			Player existingPlayer = (this.black & placed) != 0 ? Player.BLACK : Player.WHITE;
 			String message = "A %s piece already exists at %s";
 			throw new IllegalArgumentException(String.format(message, existingPlayer, square));
 		}
-		PSet<Square> captures = this.possibleSquares.get(square);
-		if (captures == null) {
-			String message = "%s will not capture any pieces if placed at (%d,%d)";
+		// Only the captures for this square are needed, not the full move list
+		Player opponent = this.player.opponent();
+		long own = this.getBits(this.player);
+		long captures = index < 0 ? 0L : Bitboards.flips(index, own, this.getBits(opponent));
+		if (captures == 0L) {
+			String message = "%s will not capture any pieces if placed at %s";
 			throw new IllegalArgumentException(String.format(message, this.player, square));
 		}
-		PSequence<Move> newMoves = this.moves.plus(new Move(square, this.player));
-		PMap<Square, Player> newOwners = this.owners.plus(square, this.player);
-		for (Square capture : captures) {
-			newOwners = newOwners.plus(capture, this.player);
-		}
-		Player opponent = this.player.opponent();
-		int playerSquareCount = this.playerSquareCounts.get(this.player) + captures.size() + 1;
-		int opponentSquareCount = this.playerSquareCounts.get(opponent) - captures.size();
-		PMap<Player, Integer> newPlayerSquareCounts = this.playerSquareCounts;
-		newPlayerSquareCounts = newPlayerSquareCounts.plus(this.player, playerSquareCount);
-		newPlayerSquareCounts = newPlayerSquareCounts.plus(opponent, opponentSquareCount);
-		return new Board(this.size, opponent, newMoves, newOwners, newPlayerSquareCounts);
+		long newOwn = own | captures | placed;
+		long newOpponent = this.getBits(opponent) & ~captures;
+		PSequence<Move> newMoves = this.moves.plus(Move.of(square, this.player));
+		int captureCount = Long.bitCount(captures);
+		long newZobristKey = this.zobristKey ^ Zobrist.move(this.player, index, captures);
+		return this.player == Player.BLACK
+				? new Board(opponent, newMoves, newOwn, newOpponent, newZobristKey, this.blackCount + captureCount + 1,
+						this.whiteCount - captureCount)
+				: new Board(opponent, newMoves, newOpponent, newOwn, newZobristKey, this.blackCount - captureCount,
+						this.whiteCount + captureCount + 1);
 	}
 
 	/**
@@ -262,14 +356,14 @@ public class Board {
 	 *         current player now set to the opponent.
 	 */
 	public Board pass() {
-		Set<Square> validNextMoves = this.getCurrentPossibleSquares();
-		if (!validNextMoves.isEmpty()) {
+		if (this.getPossibleMoves() != 0L) {
 			String message = "%s cannot pass since there are valid moves: %s";
-			throw new IllegalArgumentException(String.format(message, this.player, validNextMoves));
+			throw new IllegalArgumentException(String.format(message, this.player, this.getCurrentPossibleSquares()));
 		}
 		Player opponent = this.player.opponent();
-		PSequence<Move> newMoves = this.moves.plus(new Move(Square.PASS, this.player));
-		return new Board(this.size, opponent, newMoves, this.owners, this.playerSquareCounts);
+		PSequence<Move> newMoves = this.moves.plus(Move.of(Square.PASS, this.player));
+		return new Board(opponent, newMoves, this.black, this.white, this.zobristKey ^ Zobrist.SIDE,
+				this.blackCount, this.whiteCount);
 	}
 
 }
@@ -0,0 +1,259 @@
+package edu.miami.cse.reversi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact binary encoding of Reversi games, with one byte per move: the bit
+ * index of the square (see {@link Bitboards}), or {@link #PASS} for a pass.
+ * Every game starts from the initial board of {@link Board#Board()} and the
+ * players alternate, so the moves alone determine every position.
+ *
+ * A game record file holds the magic number {@link #MAGIC} and
+ * {@link #VERSION} as ints (big-endian), then each game as its number of moves
+ * in one unsigned byte followed by its moves. {@link Writer} and
+ * {@link Reader} stream such files through large buffers.
+ */
+public class GameRecord {
+
+	/**
+	 * The first four bytes of a game record file: "RVGR".
+	 */
+	public static final int MAGIC = 0x52564752;
+
+	/**
+	 * The file format version.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The byte that records a pass.
+	 */
+	public static final byte PASS = (byte) Bitboards.SQUARES;
+
+	/**
+	 * The most moves a game can have, including passes.
+	 */
+	public static final int MAX_MOVES = SearchBoard.MAX_PLIES;
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private GameRecord() {
+	}
+
+	/**
+	 * @return The moves played so far on the board, one byte per move.
+	 */
+	public static byte[] encode(Board board) {
+		List<Move> moves = board.getMoves();
+		byte[] record = new byte[moves.size()];
+		for (int i = 0; i < record.length; ++i) {
+			int index = Bitboards.index(moves.get(i).getSquare());
+			record[i] = index < 0 ? PASS : (byte) index;
+		}
+		return record;
+	}
+
+	/**
+	 * Replays recorded moves from the initial board.
+	 *
+	 * @param moves
+	 *          The recorded moves.
+	 * @param length
+	 *          The number of moves to replay from the start of the array.
+	 * @return The board after the moves, with the moves as its history.
+	 * @throws IllegalArgumentException
+	 *           If a move is not valid.
+	 */
+	public static Board replay(byte[] moves, int length) {
+		Board board = new Board();
+		for (int i = 0; i < length; ++i) {
+			board = moves[i] == PASS ? board.pass() : board.play(square(moves[i]));
+		}
+		return board;
+	}
+
+	/**
+	 * Replays recorded moves onto a search board, without creating a board for
+	 * each move. The moves can be taken back with
+	 * {@link SearchBoard#unmakeMove()}.
+	 *
+	 * @param moves
+	 *          The recorded moves.
+	 * @param length
+	 *          The number of moves to replay from the start of the array.
+	 * @param board
+	 *          A search board at the initial position.
+	 * @throws IllegalArgumentException
+	 *           If a move is not valid.
+	 */
+	public static void replay(byte[] moves, int length, SearchBoard board) {
+		for (int i = 0; i < length; ++i) {
+			if (moves[i] == PASS) {
+				board.pass();
+			} else {
+				board.makeMove(Bitboards.index(square(moves[i])));
+			}
+		}
+	}
+
+	private static Square square(byte move) {
+		if (move < 0 || move >= Bitboards.SQUARES) {
+			throw new IllegalArgumentException(String.format("%d is not a recorded move", move & 0xFF));
+		}
+		return Bitboards.square(move);
+	}
+
+	/**
+	 * Writes every board's moves to a new file.
+	 */
+	public static void writeAll(Path path, Iterable<Board> boards) throws IOException {
+		try (Writer writer = new Writer(path)) {
+			for (Board board : boards) {
+				writer.write(board);
+			}
+		}
+	}
+
+	/**
+	 * @return The final board of every game in a file.
+	 */
+	public static List<Board> readAll(Path path) throws IOException {
+		List<Board> boards = new ArrayList<>();
+		byte[] moves = new byte[MAX_MOVES];
+		try (Reader reader = new Reader(path)) {
+			for (int length = reader.next(moves); length >= 0; length = reader.next(moves)) {
+				boards.add(replay(moves, length));
+			}
+		}
+		return boards;
+	}
+
+	/**
+	 * Appends games to a new game record file. May be shared by several threads.
+	 */
+	public static class Writer implements Closeable {
+		private final DataOutputStream output;
+		private long games;
+
+		/**
+		 * Creates the file, replacing any existing file, and writes its header.
+		 */
+		public Writer(Path path) throws IOException {
+			this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_BYTES));
+			this.output.writeInt(MAGIC);
+			this.output.writeInt(VERSION);
+		}
+
+		/**
+		 * Writes the moves played so far on the board.
+		 */
+		public void write(Board board) throws IOException {
+			this.write(encode(board), board.getMoves().size());
+		}
+
+		/**
+		 * Writes recorded moves.
+		 *
+		 * @param moves
+		 *          The recorded moves.
+		 * @param length
+		 *          The number of moves, from the start of the array.
+		 */
+		public synchronized void write(byte[] moves, int length) throws IOException {
+			if (length > MAX_MOVES) {
+				throw new IllegalArgumentException(String.format("a game cannot have %d moves", length));
+			}
+			this.output.writeByte(length);
+			this.output.write(moves, 0, length);
+			++this.games;
+		}
+
+		/**
+		 * @return The number of games written.
+		 */
+		public synchronized long getGames() {
+			return this.games;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			this.output.close();
+		}
+	}
+
+	/**
+	 * Reads the games in a game record file in order.
+	 */
+	public static class Reader implements Closeable {
+		private final DataInputStream input;
+
+		/**
+		 * Opens a file and checks its header.
+		 *
+		 * @throws IOException
+		 *           If the file cannot be read or is not a game record file.
+		 */
+		public Reader(Path path) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES));
+			try {
+				if (this.input.readInt() != MAGIC || this.input.readInt() != VERSION) {
+					throw new IOException(String.format("%s is not a game record file", path));
+				}
+			} catch (IOException e) {
+				this.input.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Reads the next game.
+		 *
+		 * @param moves
+		 *          Receives the game's moves. Must hold {@link #MAX_MOVES} bytes.
+		 * @return The number of moves in the game, or -1 if there are no more
+		 *         games.
+		 * @throws EOFException
+		 *           If the file ends in the middle of a game.
+		 * @throws IOException
+		 *           If a game is longer than {@link #MAX_MOVES} or than the
+		 *           array.
+		 */
+		public int next(byte[] moves) throws IOException {
+			int length = this.input.read();
+			if (length < 0) {
+				return -1;
+			}
+			if (length > MAX_MOVES || length > moves.length) {
+				throw new IOException(String.format("a game cannot have %d moves", length));
+			}
+			this.input.readFully(moves, 0, length);
+			return length;
+		}
+
+		/**
+		 * @return The final board of the next game, or null if there are no more
+		 *         games.
+		 */
+		public Board nextBoard() throws IOException {
+			byte[] moves = new byte[MAX_MOVES];
+			int length = this.next(moves);
+			return length < 0 ? null : replay(moves, length);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.input.close();
+		}
+	}
+
+}
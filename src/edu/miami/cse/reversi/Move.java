@@ -4,14 +4,31 @@ import java.util.Objects;
 
 /**
  * Represents the placement of a piece by a player at a square.
+ *
+ * Moves are immutable. {@link #of(Square, Player)} returns a shared instance
+ * for every square of an 8x8 board and for {@link Square#PASS}, so recording a
+ * move need not allocate one.
  */
 public class Move {
 
-  private Square square;
-  private Player player;
+  private static final Player[] PLAYERS = Player.values();
+  // Indexed by player ordinal, then by square index, with passes last
+  private static final Move[][] MOVES = new Move[PLAYERS.length][Bitboards.SQUARES + 1];
+  static {
+    for (Player player : PLAYERS) {
+      for (int index = 0; index < Bitboards.SQUARES; ++index) {
+        MOVES[player.ordinal()][index] = new Move(Square.of(index), player);
+      }
+      MOVES[player.ordinal()][Bitboards.SQUARES] = new Move(Square.PASS, player);
+    }
+  }
+
+  private final Square square;
+  private final Player player;
 
   /**
-   * Creates a new Move.
+   * Creates a new Move. Prefer {@link #of(Square, Player)}, which does not
+   * allocate.
    * 
    * @param square
    *          The square where a piece was placed.
@@ -23,6 +40,22 @@ public class Move {
     this.player = player;
   }
 
+  /**
+   * @param square
+   *          The square where a piece was placed, or {@link Square#PASS}.
+   * @param player
+   *          The player placing the piece.
+   * @return A shared move for squares of an 8x8 board and passes, and a new
+   *         move otherwise.
+   */
+  public static Move of(Square square, Player player) {
+    int index = square.getIndex();
+    if (index >= 0) {
+      return MOVES[player.ordinal()][index];
+    }
+    return square.equals(Square.PASS) ? MOVES[player.ordinal()][Bitboards.SQUARES] : new Move(square, player);
+  }
+
   /**
    * @return The square where the piece was placed.
    */
@@ -44,11 +77,15 @@ public class Move {
 
   @Override
   public int hashCode() {
-    return Objects.hash(this.square, this.player);
+    // The same value as Objects.hash(square, player), without the varargs array
+    return 31 * (31 + Objects.hashCode(this.square)) + Objects.hashCode(this.player);
   }
 
   @Override
   public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
     if (obj instanceof Move) {
       Move that = (Move) obj;
       return Objects.equals(this.square, that.square) && Objects.equals(this.player, that.player);
@@ -0,0 +1,35 @@
+package edu.miami.cse.reversi;
+
+/**
+ * Receives the changes made to a {@link SearchBoard} by
+ * {@link SearchBoard#makeMove(int)} and {@link SearchBoard#unmakeMove()}, so
+ * that state derived from the pieces (such as an evaluation) can be updated
+ * incrementally instead of recomputed at every node. Passes do not move any
+ * pieces and are not reported.
+ */
+public interface MoveListener {
+	/**
+	 * Called after a piece is placed.
+	 *
+	 * @param player
+	 *          The player who placed the piece.
+	 * @param index
+	 *          The bit index of the placed piece.
+	 * @param flips
+	 *          The pieces captured by the play, now owned by player.
+	 */
+	public void movePlayed(Player player, int index, long flips);
+
+	/**
+	 * Called after a placed piece is taken back.
+	 *
+	 * @param player
+	 *          The player who had placed the piece.
+	 * @param index
+	 *          The bit index of the removed piece.
+	 * @param flips
+	 *          The pieces that had been captured, now owned by the opponent
+	 *          again.
+	 */
+	public void moveUndone(Player player, int index, long flips);
+}
@@ -0,0 +1,382 @@
+package edu.miami.cse.reversi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects how long each strategy takes to choose its squares, how close that
+ * comes to the timeout, and, for a {@link SearchingStrategy}, how many
+ * positions it searched. {@link Reversi} records every move when given a
+ * metrics object, and one object may be shared by many games at once.
+ *
+ * Move times go into a histogram with 16 buckets per power of two, so
+ * percentiles are accurate to about 6% while recording stays a few atomic
+ * increments.
+ */
+public class MoveMetrics {
+
+	private final long timeoutNanos;
+	private final ConcurrentMap<Strategy, Entry> entries = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Strategy, String> names = new ConcurrentHashMap<>();
+	// Orders entries by when they were created, to number strategies of one class
+	private final AtomicLong created = new AtomicLong();
+
+	/**
+	 * @param timeout
+	 *          The maximum time allowed to a strategy for choosing a square.
+	 * @param timeoutUnit
+	 *          The unit of the timeout
+	 */
+	public MoveMetrics(long timeout, TimeUnit timeoutUnit) {
+		this.timeoutNanos = timeoutUnit.toNanos(timeout);
+	}
+
+	/**
+	 * Records a move.
+	 *
+	 * @param strategy
+	 *          The strategy that chose the move.
+	 * @param nanos
+	 *          The time from asking for the move to receiving it.
+	 * @param nodes
+	 *          The number of positions the strategy reported searching, or -1
+	 *          if it does not report them.
+	 */
+	public void record(Strategy strategy, long nanos, long nodes) {
+		Entry entry = this.entry(strategy);
+		entry.latency.record(nanos);
+		if (nodes >= 0) {
+			entry.nodes.addAndGet(nodes);
+			entry.nodeNanos.addAndGet(nanos);
+		}
+	}
+
+	/**
+	 * Records a move that was not chosen in time, whether the strategy forfeited
+	 * or its best square so far was played.
+	 *
+	 * @param strategy
+	 *          The strategy that timed out.
+	 * @param nanos
+	 *          The time from asking for the move to giving up on it.
+	 */
+	public void recordTimeout(Strategy strategy, long nanos) {
+		Entry entry = this.entry(strategy);
+		entry.latency.record(nanos);
+		entry.timeouts.incrementAndGet();
+	}
+
+	/**
+	 * Labels a strategy's row in the summaries. Strategies without a name are
+	 * labelled by their class, numbered in the order they first moved when
+	 * several share a class.
+	 */
+	public void setName(Strategy strategy, String name) {
+		this.names.put(strategy, name);
+	}
+
+	private Entry entry(Strategy strategy) {
+		Entry entry = this.entries.get(strategy);
+		if (entry == null) {
+			Entry created = new Entry(strategy, this.created.getAndIncrement());
+			entry = this.entries.putIfAbsent(strategy, created);
+			if (entry == null) {
+				entry = created;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * @return A summary for each strategy with recorded moves, ordered by name.
+	 */
+	public List<Summary> getSummaries() {
+		List<Entry> entries = new ArrayList<>(this.entries.values());
+		Collections.sort(entries, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry a, Entry b) {
+				return Long.compare(a.sequence, b.sequence);
+			}
+		});
+		Map<Class<?>, Integer> classCounts = new HashMap<>();
+		for (Entry entry : entries) {
+			Integer count = classCounts.get(entry.strategy.getClass());
+			classCounts.put(entry.strategy.getClass(), count == null ? 1 : count + 1);
+		}
+		Map<Class<?>, Integer> numbers = new HashMap<>();
+		List<Summary> summaries = new ArrayList<>();
+		for (Entry entry : entries) {
+			Class<?> type = entry.strategy.getClass();
+			Integer number = numbers.get(type);
+			number = number == null ? 1 : number + 1;
+			numbers.put(type, number);
+			String name = this.names.get(entry.strategy);
+			if (name == null) {
+				name = type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName();
+				if (classCounts.get(type) > 1) {
+					name += "#" + number;
+				}
+			}
+			summaries.add(new Summary(entry, name, this.timeoutNanos));
+		}
+		Collections.sort(summaries, new Comparator<Summary>() {
+			@Override
+			public int compare(Summary a, Summary b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		return summaries;
+	}
+
+	/**
+	 * Writes the summaries as CSV with a header row. Times are in milliseconds.
+	 */
+	public void writeCsv(Appendable out) throws IOException {
+		out.append("strategy,moves,timeouts,p50_ms,p99_ms,max_ms,mean_ms,timeout_ms,min_remaining_ms,"
+				+ "nodes,nodes_per_second\n");
+		for (Summary summary : this.getSummaries()) {
+			out.append(String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%.0f\n",
+					summary.getName(), summary.getMoves(), summary.getTimeouts(), millis(summary.getP50Nanos()),
+					millis(summary.getP99Nanos()), millis(summary.getMaxNanos()), millis(summary.getMeanNanos()),
+					millis(this.timeoutNanos), millis(summary.getMinRemainingNanos()), summary.getNodes(),
+					summary.getNodesPerSecond()));
+		}
+	}
+
+	/**
+	 * Writes the summaries as a JSON array of objects with the same fields as
+	 * {@link #writeCsv(Appendable)}.
+	 */
+	public void writeJson(Appendable out) throws IOException {
+		out.append("[");
+		String separator = "\n";
+		for (Summary summary : this.getSummaries()) {
+			out.append(separator);
+			out.append(String.format(Locale.ROOT,
+					"  {\"strategy\": \"%s\", \"moves\": %d, \"timeouts\": %d, \"p50_ms\": %.3f, \"p99_ms\": %.3f, "
+							+ "\"max_ms\": %.3f, \"mean_ms\": %.3f, \"timeout_ms\": %.3f, \"min_remaining_ms\": %.3f, "
+							+ "\"nodes\": %d, \"nodes_per_second\": %.0f}",
+					summary.getName().replace("\\", "\\\\").replace("\"", "\\\""), summary.getMoves(),
+					summary.getTimeouts(), millis(summary.getP50Nanos()), millis(summary.getP99Nanos()),
+					millis(summary.getMaxNanos()), millis(summary.getMeanNanos()), millis(this.timeoutNanos),
+					millis(summary.getMinRemainingNanos()), summary.getNodes(), summary.getNodesPerSecond()));
+			separator = ",\n";
+		}
+		out.append("\n]\n");
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * The statistics of one strategy at the time the summary was taken.
+	 */
+	public static class Summary {
+		private final String name;
+		private final long moves;
+		private final long timeouts;
+		private final long p50Nanos;
+		private final long p99Nanos;
+		private final long maxNanos;
+		private final long meanNanos;
+		private final long minRemainingNanos;
+		private final long nodes;
+		private final double nodesPerSecond;
+
+		private Summary(Entry entry, String name, long timeoutNanos) {
+			this.name = name;
+			this.moves = entry.latency.count();
+			this.timeouts = entry.timeouts.get();
+			this.p50Nanos = entry.latency.percentile(0.50);
+			this.p99Nanos = entry.latency.percentile(0.99);
+			this.maxNanos = entry.latency.max();
+			this.meanNanos = this.moves == 0 ? 0 : entry.latency.total() / this.moves;
+			this.minRemainingNanos = timeoutNanos - this.maxNanos;
+			this.nodes = entry.nodes.get();
+			long nodeNanos = entry.nodeNanos.get();
+			this.nodesPerSecond = nodeNanos == 0 ? 0.0 : this.nodes / (nodeNanos / 1e9);
+		}
+
+		/**
+		 * @return The name given to {@link MoveMetrics#setName(Strategy, String)},
+		 *         or else the simple class name of the strategy (the full name of
+		 *         an anonymous class), with a number if several strategies share
+		 *         the class.
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * @return The number of moves recorded, including timeouts.
+		 */
+		public long getMoves() {
+			return this.moves;
+		}
+
+		/**
+		 * @return The number of moves that were not chosen in time, including
+		 *         those saved by playing the best square so far.
+		 */
+		public long getTimeouts() {
+			return this.timeouts;
+		}
+
+		/**
+		 * @return The median move time.
+		 */
+		public long getP50Nanos() {
+			return this.p50Nanos;
+		}
+
+		/**
+		 * @return The 99th percentile move time.
+		 */
+		public long getP99Nanos() {
+			return this.p99Nanos;
+		}
+
+		/**
+		 * @return The longest move time.
+		 */
+		public long getMaxNanos() {
+			return this.maxNanos;
+		}
+
+		/**
+		 * @return The average move time.
+		 */
+		public long getMeanNanos() {
+			return this.meanNanos;
+		}
+
+		/**
+		 * @return The timeout minus the longest move time: how close the strategy
+		 *         came to timing out. Negative if it timed out.
+		 */
+		public long getMinRemainingNanos() {
+			return this.minRemainingNanos;
+		}
+
+		/**
+		 * @return The number of positions searched, as reported by a
+		 *         {@link SearchingStrategy}, or 0 for other strategies.
+		 */
+		public long getNodes() {
+			return this.nodes;
+		}
+
+		/**
+		 * @return The positions searched per second of move time, or 0 if the
+		 *         strategy does not report them.
+		 */
+		public double getNodesPerSecond() {
+			return this.nodesPerSecond;
+		}
+	}
+
+	private static class Entry {
+		final Strategy strategy;
+		final Histogram latency = new Histogram();
+		final AtomicLong timeouts = new AtomicLong();
+		final AtomicLong nodes = new AtomicLong();
+		// The time of the moves that reported nodes
+		final AtomicLong nodeNanos = new AtomicLong();
+
+		final long sequence;
+
+		Entry(Strategy strategy, long sequence) {
+			this.strategy = strategy;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * A lock-free histogram of non-negative values. Values below 16 have a
+	 * bucket each; above that, each power of two is split into 16 buckets.
+	 */
+	private static class Histogram {
+		private static final int SUB_BITS = 4;
+		private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+		private final AtomicLongArray buckets = new AtomicLongArray((Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		void record(long value) {
+			value = Math.max(0L, value);
+			this.buckets.incrementAndGet(bucket(value));
+			this.count.incrementAndGet();
+			this.total.addAndGet(value);
+			for (long max = this.max.get(); value > max; max = this.max.get()) {
+				if (this.max.compareAndSet(max, value)) {
+					break;
+				}
+			}
+		}
+
+		long count() {
+			return this.count.get();
+		}
+
+		long total() {
+			return this.total.get();
+		}
+
+		long max() {
+			return this.max.get();
+		}
+
+		/**
+		 * @return The upper end of the bucket holding the given fraction of the
+		 *         recorded values, but no more than the maximum.
+		 */
+		long percentile(double fraction) {
+			long count = this.count.get();
+			if (count == 0) {
+				return 0L;
+			}
+			long rank = Math.max(1L, (long) Math.ceil(fraction * count));
+			long seen = 0;
+			for (int i = 0; i < this.buckets.length(); ++i) {
+				seen += this.buckets.get(i);
+				if (seen >= rank) {
+					return Math.min(upperBound(i), this.max.get());
+				}
+			}
+			return this.max.get();
+		}
+
+		private static int bucket(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+			return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+		}
+
+		private static long upperBound(int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+			long sub = bucket % SUB_BUCKETS;
+			return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+		}
+	}
+
+}
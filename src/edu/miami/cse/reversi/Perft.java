@@ -0,0 +1,176 @@
+package edu.miami.cse.reversi;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the positions reachable from a board in exactly N moves ("perft"), as
+ * a correctness check and speed measure for move generation. A pass counts as
+ * a move, as with {@link Board#pass()}, and a finished game counts as one leaf
+ * however many moves remain.
+ *
+ * Usage: <code>Perft depth [--divide] [--parallel] [--search-board]</code>
+ * <ul>
+ * <li><code>--divide</code> prints the count below each root move</li>
+ * <li><code>--parallel</code> counts the root moves on a fork-join pool</li>
+ * <li><code>--search-board</code> counts with {@link SearchBoard} instead of
+ * {@link Board}</li>
+ * </ul>
+ * The total from the initial board is checked against the published counts.
+ */
+public class Perft {
+
+	/**
+	 * The published perft counts from the initial board, indexed by depth.
+	 */
+	public static final long[] INITIAL_COUNTS = { 1L, 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L,
+			3005288L, 24571284L, 212258800L, 1939886636L, 18429641748L, 184042084512L };
+
+	/**
+	 * @return The number of positions reachable from the board in exactly depth
+	 *         moves, counting finished games as leaves.
+	 */
+	public static long perft(Board board, int depth) {
+		if (depth == 0 || board.isComplete()) {
+			return 1L;
+		}
+		Board passed = board.getCurrentPossibleSquares().isEmpty() ? board.pass() : null;
+		if (passed != null) {
+			return perft(passed, depth - 1);
+		}
+		long nodes = 0L;
+		for (Square square : board.getCurrentPossibleSquares()) {
+			nodes += perft(board.play(square), depth - 1);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Like {@link #perft(Board, int)}, but walks the tree with
+	 * {@link SearchBoard#makeMove(int)} and {@link SearchBoard#unmakeMove()}.
+	 */
+	public static long perft(SearchBoard board, int depth) {
+		if (depth == 0) {
+			return 1L;
+		}
+		long moves = board.getPossibleMoves();
+		if (moves == 0L) {
+			if (board.getOpponentMobility() == 0) {
+				return 1L;
+			}
+			board.pass();
+			long nodes = perft(board, depth - 1);
+			board.unmakeMove();
+			return nodes;
+		}
+		if (depth == 1) {
+			return Long.bitCount(moves);
+		}
+		long nodes = 0L;
+		for (; moves != 0L; moves &= moves - 1) {
+			board.makeMove(Long.numberOfTrailingZeros(moves));
+			nodes += perft(board, depth - 1);
+			board.unmakeMove();
+		}
+		return nodes;
+	}
+
+	/**
+	 * @return The perft count below each move from the board, in the order of
+	 *         {@link Board#getCurrentPossibleSquares()}, or below
+	 *         {@link Square#PASS} if the current player must pass.
+	 */
+	public static Map<Square, Long> divide(Board board, int depth, boolean useSearchBoard, ForkJoinPool pool) {
+		List<Square> roots = new ArrayList<>(board.getCurrentPossibleSquares());
+		if (roots.isEmpty() && !board.isComplete()) {
+			roots.add(Square.PASS);
+		}
+		List<RootTask> tasks = new ArrayList<>();
+		for (Square square : roots) {
+			Board child = square.equals(Square.PASS) ? board.pass() : board.play(square);
+			tasks.add(new RootTask(child, depth - 1, useSearchBoard));
+		}
+		if (pool == null) {
+			for (RootTask task : tasks) {
+				task.invoke();
+			}
+		} else {
+			for (RootTask task : tasks) {
+				pool.execute(task);
+			}
+		}
+		Map<Square, Long> counts = new LinkedHashMap<>();
+		for (int i = 0; i < roots.size(); ++i) {
+			counts.put(roots.get(i), tasks.get(i).join());
+		}
+		return counts;
+	}
+
+	private static class RootTask extends RecursiveTask<Long> {
+		private static final long serialVersionUID = 1L;
+
+		private final Board board;
+		private final int depth;
+		private final boolean useSearchBoard;
+
+		RootTask(Board board, int depth, boolean useSearchBoard) {
+			this.board = board;
+			this.depth = depth;
+			this.useSearchBoard = useSearchBoard;
+		}
+
+		@Override
+		protected Long compute() {
+			return this.useSearchBoard ? perft(new SearchBoard(this.board), this.depth) : perft(this.board, this.depth);
+		}
+	}
+
+	public static void main(String[] args) {
+		int depth = -1;
+		boolean divide = false;
+		boolean parallel = false;
+		boolean useSearchBoard = false;
+		for (String arg : args) {
+			if (arg.equals("--divide")) {
+				divide = true;
+			} else if (arg.equals("--parallel")) {
+				parallel = true;
+			} else if (arg.equals("--search-board")) {
+				useSearchBoard = true;
+			} else {
+				depth = Integer.parseInt(arg);
+			}
+		}
+		if (depth < 1) {
+			System.err.println("Usage: Perft depth [--divide] [--parallel] [--search-board]");
+			System.exit(2);
+		}
+
+		Board board = new Board();
+		ForkJoinPool pool = parallel ? new ForkJoinPool() : null;
+		long start = System.nanoTime();
+		Map<Square, Long> counts = divide(board, depth, useSearchBoard, pool);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if (pool != null) {
+			pool.shutdown();
+		}
+
+		long total = 0L;
+		for (Map.Entry<Square, Long> entry : counts.entrySet()) {
+			if (divide) {
+				System.out.printf("%s\t%d\n", entry.getKey(), entry.getValue());
+			}
+			total += entry.getValue();
+		}
+		System.out.printf("depth %d: %d nodes in %.3f s, %.0f nodes/s\n", depth, total, seconds, total / seconds);
+		if (depth < INITIAL_COUNTS.length && total != INITIAL_COUNTS[depth]) {
+			System.out.printf("MISMATCH: expected %d\n", INITIAL_COUNTS[depth]);
+			System.exit(1);
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package edu.miami.cse.reversi;
+
+/**
+ * A strategy that can use the opponent's time. When pondering is enabled with
+ * {@link Reversi#setPondering(boolean)}, the game calls
+ * {@link #ponder(Board, SearchCallback)} on a separate thread while the
+ * opponent chooses its square, so the strategy can search the positions it may
+ * face next and reuse the results in its following
+ * {@link #chooseSquare(Board)}.
+ */
+public interface PonderingStrategy extends Strategy {
+	/**
+	 * Searches until the callback is cancelled, or until there is nothing left
+	 * to search, and should return promptly once cancelled: the game waits only
+	 * a short grace period before asking the strategy for its next square.
+	 * Must be safe to run alongside other games' calls, and alongside this
+	 * game's {@link #chooseSquare(Board)} if it overruns the grace period.
+	 *
+	 * @param board
+	 *          The board with the opponent to move. The opponent has at least
+	 *          one possible square.
+	 * @param callback
+	 *          Cancelled as soon as the opponent has chosen its square.
+	 */
+	public void ponder(Board board, SearchCallback callback);
+}
@@ -8,8 +8,11 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import com.google.common.base.Functions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -22,9 +25,33 @@ import edu.miami.cse.reversi.strategy.*;
  */
 public class Reversi {
 
+	/**
+	 * What happens when a strategy does not choose a square in time.
+	 */
+	public enum TimeoutPolicy {
+		/**
+		 * The strategy loses the game.
+		 */
+		FORFEIT,
+		/**
+		 * The last square the strategy published through
+		 * {@link SearchCallback#setBestSquare(Square)} is played. A strategy that
+		 * published no valid square loses the game.
+		 */
+		PLAY_BEST_SO_FAR
+	}
+
 	private Map<Player, Strategy> strategies; 
 	private long timeout; //The maximum time allowed to a strategy for choosing a square.
 	private TimeUnit timeoutUnit; //The unit of the timeout
+	private ExecutorService executor; //Runs the strategies, or null to use a new thread per game
+	private MoveMetrics metrics; //Records the strategies' moves, or null
+	private TimeoutPolicy timeoutPolicy = TimeoutPolicy.PLAY_BEST_SO_FAR;
+	private boolean pondering; //Lets a PonderingStrategy search on its opponent's time
+	private ExecutorService ponderExecutor; //Runs the ponders, or null to use a new pool per game
+
+	// The longest wait for a cancelled ponder to return before the game moves on
+	private static final long PONDER_GRACE_MILLIS = 100;
 
 
 	/**
@@ -44,11 +71,109 @@ public class Reversi {
 			Strategy whiteStrategy,
 			long timeout,
 			TimeUnit timeoutUnit) {
+		this(blackStrategy, whiteStrategy, timeout, timeoutUnit, null);
+	}
+
+	/**
+	 * Creates a new Reversi game whose strategies run on a shared executor. The
+	 * executor is not shut down by the game, so it can be reused across many
+	 * games; see {@link #newStrategyExecutor()}.
+	 * 
+	 * The executor must not be bounded. A move's timeout starts when it is
+	 * submitted, so time spent waiting in the executor's queue counts against
+	 * the strategy, and a strategy that ignores interrupts after timing out keeps
+	 * its thread until it returns. On a fixed-size pool shared between games,
+	 * one such strategy makes every later move wait and time out in turn.
+	 * 
+	 * @param blackStrategy
+	 *          The strategy used to play the black pieces.
+	 * @param whiteStrategy
+	 *          The strategy used to play the white pieces.
+	 * @param timeout
+	 *          The maximum time allowed to a strategy for choosing a square.
+	 * @param timeoutUnit
+	 *          The unit of the timeout
+	 * @param executor
+	 *          Runs the strategies' {@link Strategy#chooseSquare(Board)} calls,
+	 *          with a thread for every task, such as one made by
+	 *          {@link #newStrategyExecutor()}; or null to create an executor for
+	 *          each game.
+	 */
+	public Reversi(
+			Strategy blackStrategy,
+			Strategy whiteStrategy,
+			long timeout,
+			TimeUnit timeoutUnit,
+			ExecutorService executor) {
 		this.strategies = new HashMap<>();
 		this.strategies.put(Player.BLACK, blackStrategy);
 		this.strategies.put(Player.WHITE, whiteStrategy);
 		this.timeout = timeout;
 		this.timeoutUnit = timeoutUnit;
+		this.executor = executor;
+	}
+
+	/**
+	 * Creates an executor suitable for sharing between many games. Threads are
+	 * reused between games, and a strategy that keeps running after timing out
+	 * occupies only its own thread instead of blocking later games. The threads
+	 * are daemons, so a runaway strategy cannot keep the JVM alive.
+	 * 
+	 * @return A new executor. The caller should shut it down when done.
+	 */
+	public static ExecutorService newStrategyExecutor() {
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "reversi-strategy-" + this.count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @param metrics
+	 *          Records how long every move takes and, for a
+	 *          {@link SearchingStrategy}, how many positions it searched, or null
+	 *          to record nothing. May be shared with other games.
+	 */
+	public void setMetrics(MoveMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param timeoutPolicy
+	 *          What happens when a strategy runs out of time. The default is
+	 *          {@link TimeoutPolicy#PLAY_BEST_SO_FAR}.
+	 */
+	public void setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+		this.timeoutPolicy = timeoutPolicy;
+	}
+
+	/**
+	 * @param pondering
+	 *          True to let a {@link PonderingStrategy} search on a separate
+	 *          thread while its opponent chooses a square. Off by default, since
+	 *          it doubles the number of busy threads. The ponders run on the
+	 *          {@link #setPonderExecutor(ExecutorService) ponder executor}.
+	 */
+	public void setPondering(boolean pondering) {
+		this.pondering = pondering;
+	}
+
+	/**
+	 * @param ponderExecutor
+	 *          Runs the ponders, so games can share its threads; or null (the
+	 *          default) to create a pool for each pondering game. Like the
+	 *          strategy executor it must not be bounded, and it is not shut down
+	 *          by the game. Kept separate from the strategy executor so a ponder
+	 *          never delays a move. See {@link #newStrategyExecutor()}.
+	 */
+	public void setPonderExecutor(ExecutorService ponderExecutor) {
+		this.ponderExecutor = ponderExecutor;
 	}
 
 	/**
@@ -58,10 +183,39 @@ public class Reversi {
 	 *          The board in its initial state.
 	 * @return The board after play is complete.
 	 * @throws StrategyTimedOutException
-	 *           If a strategy exceeds the alloted time to choose a square.
+	 *           If a strategy exceeds the alloted time to choose a square and
+	 *           the {@link TimeoutPolicy} does not give it a square, or if it
+	 *           fails.
 	 */
 	public Board play(Board board) throws StrategyTimedOutException {
-		ExecutorService executor = Executors.newSingleThreadExecutor();
+		// Pondering runs on threads of its own, so it never delays the moves
+		ExecutorService ponderExecutor = this.pondering ? this.ponderExecutor : null;
+		boolean ownPonderExecutor = this.pondering && ponderExecutor == null;
+		if (ownPonderExecutor) {
+			ponderExecutor = newStrategyExecutor();
+		}
+		try {
+			if (this.executor != null) {
+				return this.play(board, this.executor, ponderExecutor);
+			}
+			// A timed-out strategy that is still returning needs a thread of its
+			// own next to the current strategy
+			ExecutorService executor = newStrategyExecutor();
+			try {
+				return this.play(board, executor, ponderExecutor);
+			} finally {
+				// Also reached on timeouts, so the thread is always released
+				executor.shutdownNow();
+			}
+		} finally {
+			if (ownPonderExecutor) {
+				ponderExecutor.shutdownNow();
+			}
+		}
+	}
+
+	private Board play(Board board, ExecutorService executor, ExecutorService ponderExecutor)
+			throws StrategyTimedOutException {
 		Board curr = board;
 		while (!curr.isComplete()) {
 			if (curr.getCurrentPossibleSquares().isEmpty()) {
@@ -70,26 +224,105 @@ public class Reversi {
 				Player player = curr.getCurrentPlayer();
 				final Strategy strategy = this.strategies.get(player);
 				final Board boardForFuture = curr;
+				final boolean searching = strategy instanceof SearchingStrategy;
+				final MoveCallback callback = new MoveCallback();
+				final Strategy waiting = this.strategies.get(player.opponent());
+				Future<?> ponder = null;
+				final MoveCallback ponderCallback = new MoveCallback();
+				if (ponderExecutor != null && waiting != strategy && waiting instanceof PonderingStrategy) {
+					ponder = ponderExecutor.submit(new Runnable() {
+						@Override
+						public void run() {
+							((PonderingStrategy) waiting).ponder(boardForFuture, ponderCallback);
+						}
+					});
+				}
+				long start = System.nanoTime();
 				Future<Square> future = executor.submit(new Callable<Square>() {
 					@Override
 					public Square call() throws Exception {
+						if (searching) {
+							return ((SearchingStrategy) strategy).chooseSquare(boardForFuture, callback);
+						}
 						return strategy.chooseSquare(boardForFuture);
 					}
 				});
 				Square square;
 				try {
 					square = future.get(this.timeout, this.timeoutUnit);
+					if (this.metrics != null) {
+						this.metrics.record(strategy, System.nanoTime() - start, searching ? callback.nodes.get() : -1L);
+					}
 				} catch (InterruptedException | ExecutionException | TimeoutException e) {
+					// Tell a searching strategy to stop before interrupting it, so it
+					// frees its threads even if it does not check for interrupts
+					callback.cancelled = true;
 					future.cancel(true);
-					throw new StrategyTimedOutException(strategy, this.strategies.get(player.opponent()));
+					if (this.metrics != null) {
+						this.metrics.recordTimeout(strategy, System.nanoTime() - start);
+					}
+					square = callback.bestSquare;
+					if (!(e instanceof TimeoutException) || this.timeoutPolicy != TimeoutPolicy.PLAY_BEST_SO_FAR
+							|| square == null || !curr.getCurrentPossibleSquares().contains(square)) {
+						throw new StrategyTimedOutException(strategy, waiting);
+					}
+				} finally {
+					if (ponder != null) {
+						this.stopPondering(ponder, ponderCallback);
+					}
 				}
 				curr = curr.play(square);
 			}
 		}
-		executor.shutdownNow();
 		return curr;
 	}
 
+	/**
+	 * Cancels a strategy's pondering and waits briefly for it to return, so it
+	 * does not run alongside the same strategy's next move. Pondering only helps
+	 * its strategy, so a failure is ignored, and a strategy that does not return
+	 * within {@link #PONDER_GRACE_MILLIS} (or the move timeout, if shorter) is
+	 * interrupted and left behind.
+	 */
+	private void stopPondering(Future<?> ponder, MoveCallback callback) {
+		callback.cancelled = true;
+		try {
+			long graceNanos = Math.min(this.timeoutUnit.toNanos(this.timeout),
+					TimeUnit.MILLISECONDS.toNanos(PONDER_GRACE_MILLIS));
+			ponder.get(graceNanos, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			ponder.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | TimeoutException e) {
+			ponder.cancel(true);
+		}
+	}
+
+	/**
+	 * The callback for one move of a {@link SearchingStrategy}, or for one
+	 * {@link PonderingStrategy#ponder(Board, SearchCallback)}.
+	 */
+	private static class MoveCallback implements SearchCallback {
+		final AtomicLong nodes = new AtomicLong();
+		volatile Square bestSquare;
+		volatile boolean cancelled;
+
+		@Override
+		public void addNodes(long count) {
+			this.nodes.addAndGet(count);
+		}
+
+		@Override
+		public void setBestSquare(Square square) {
+			this.bestSquare = square;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return this.cancelled;
+		}
+	}
+
 	/**
 	 * Gets the winning strategy from a board.
 	 * 
@@ -1,82 +1,95 @@
-package edu.miami.cse.reversi;
-
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
-
-import com.google.common.base.Functions;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Ordering;
-
-import edu.miami.cse.reversi.strategy.*;
-
-public class ReversiTournament {
-	/**
-	 * Runs a round-robin tournament over Reversi strategies.
-	 */
-	public static void main(String[] args) throws Exception {
-
-		int nGames = 5;
-		long timeout = 1000;
-		TimeUnit timeoutUnit = TimeUnit.SECONDS;
-
-		// List of the strategies in the tournament 
-		List<Strategy> strategies = Lists.newArrayList();
-
-		strategies.add(new RandomStrategy());
-		strategies.add(new GameProject5());
-		// strategies.add(new GameProject5());
-
-
-		// The number of wins of each strategy 
-		Map<Strategy, Integer> wins = Maps.newHashMap();
-		for (Strategy strategy : strategies) {
-			wins.put(strategy, 0);
-		}
-
-		// Run N rounds, pairing each strategy with each other strategy. There will
-		// actually be 2N games since each strategy gets to be both black and white
-		Board board = new Board();
-		for (int game = 0; game < nGames; ++game) {
-			for (int i = 0; i < strategies.size(); ++i) {
-				for (int j = i + 1; j < strategies.size(); ++j) {
-					Strategy strategy1 = strategies.get(i);
-					Strategy strategy2 = strategies.get(j);
-					Reversi reversi;
-					Strategy winner;
-
-					// first game: strategy1=BLACK, strategy2=WHITE
-					reversi = new Reversi(strategy1, strategy2, timeout, timeoutUnit);
-					try {
-						winner = reversi.getWinner(reversi.play(board));
-					} catch (StrategyTimedOutException e) {
-						winner = e.getOpponentStrategy();
-					}
-					// If one of the strategies timed out, the opponent is considered the winner 
-					if (winner != null) {
-						wins.put(winner, wins.get(winner) + 1);
-					}
-
-					// second game: strategy2=BLACK, strategy1=WHITE
-					reversi = new Reversi(strategy2, strategy1, timeout, timeoutUnit);
-					try {
-						winner = reversi.getWinner(reversi.play(board));
-					} catch (StrategyTimedOutException e) {
-						winner = e.getOpponentStrategy();
-					}
-					if (winner != null) {
-						wins.put(winner, wins.get(winner) + 1);
-					}
-				}
-			}
-		}
-
-		// rank strategies by number of wins
-		Ordering<Strategy> byWins = Ordering.natural().onResultOf(Functions.forMap(wins)).reverse();
-		for (Strategy strategy : byWins.sortedCopy(wins.keySet())) {
-			System.out.printf("%4d\t%s\n", wins.get(strategy), strategy.getClass().getName());
-		}
-	}
-
-}
+package edu.miami.cse.reversi;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Functions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+import edu.miami.cse.reversi.strategy.*;
+
+public class ReversiTournament {
+	/**
+	 * Runs a round-robin tournament over Reversi strategies. If a file is given,
+	 * the games are saved to it in the {@link GameRecord} format. The move times
+	 * of each strategy are printed at the end, and written as CSV or JSON with
+	 * --csv or --json.
+	 *
+	 * Usage: <code>ReversiTournament [archive] [--csv file] [--json file]</code>
+	 */
+	public static void main(String[] args) throws Exception {
+		String archivePath = null;
+		String csvPath = null;
+		String jsonPath = null;
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("--csv")) {
+				csvPath = args[++i];
+			} else if (args[i].equals("--json")) {
+				jsonPath = args[++i];
+			} else {
+				archivePath = args[i];
+			}
+		}
+
+		int nGames = 5;
+		long timeout = 1000;
+		TimeUnit timeoutUnit = TimeUnit.SECONDS;
+
+		// List of the strategies in the tournament 
+		List<Strategy> strategies = Lists.newArrayList();
+
+		strategies.add(new RandomStrategy());
+		strategies.add(new GameProject5());
+		// strategies.add(new GameProject5());
+
+
+		// Run N rounds, pairing each strategy with each other strategy. There will
+		// actually be 2N games since each strategy gets to be both black and white
+		Tournament tournament = new Tournament(strategies, nGames, timeout, timeoutUnit);
+		GameRecord.Writer archive = archivePath != null ? new GameRecord.Writer(Paths.get(archivePath)) : null;
+		tournament.setArchive(archive);
+		Map<Strategy, Integer> wins;
+		try {
+			wins = tournament.run(Runtime.getRuntime().availableProcessors());
+		} finally {
+			if (archive != null) {
+				archive.close();
+			}
+		}
+
+		// rank strategies by number of wins
+		Ordering<Strategy> byWins = Ordering.natural().onResultOf(Functions.forMap(wins)).reverse();
+		for (Strategy strategy : byWins.sortedCopy(wins.keySet())) {
+			System.out.printf("%4d\t%s\n", wins.get(strategy), strategy.getClass().getName());
+		}
+		System.out.printf("%d games, %.1f games/s\n", tournament.getGamesPlayed(), tournament.getGamesPerSecond());
+
+		MoveMetrics metrics = tournament.getMetrics();
+		for (MoveMetrics.Summary summary : metrics.getSummaries()) {
+			System.out.printf("%s: %d moves, p50 %.2f ms, p99 %.2f ms, max %.2f ms (%.2f ms to spare), %d timeouts",
+					summary.getName(), summary.getMoves(), summary.getP50Nanos() / 1e6, summary.getP99Nanos() / 1e6,
+					summary.getMaxNanos() / 1e6, summary.getMinRemainingNanos() / 1e6, summary.getTimeouts());
+			if (summary.getNodes() > 0) {
+				System.out.printf(", %.0f nodes/s", summary.getNodesPerSecond());
+			}
+			System.out.println();
+		}
+		if (csvPath != null) {
+			try (Writer writer = Files.newBufferedWriter(Paths.get(csvPath), StandardCharsets.UTF_8)) {
+				metrics.writeCsv(writer);
+			}
+		}
+		if (jsonPath != null) {
+			try (Writer writer = Files.newBufferedWriter(Paths.get(jsonPath), StandardCharsets.UTF_8)) {
+				metrics.writeJson(writer);
+			}
+		}
+	}
+
+}
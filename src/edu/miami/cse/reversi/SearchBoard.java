@@ -0,0 +1,274 @@
+package edu.miami.cse.reversi;
+
+/**
+ * A mutable Reversi position for game-tree search. Unlike {@link Board}, which
+ * returns a new board for every play, a SearchBoard is changed in place by
+ * {@link #makeMove(int)} and restored by {@link #unmakeMove()}, so a search can
+ * walk the tree without allocating anything per node.
+ *
+ * A SearchBoard is not thread-safe. Each search thread should create its own
+ * from the {@link Board} it was given.
+ */
+public class SearchBoard {
+
+	/**
+	 * The maximum number of moves (including passes) that can be undone. A game
+	 * has at most 60 placements and a pass is always followed by a placement or
+	 * the end of the game.
+	 */
+	public static final int MAX_PLIES = 128;
+
+	private long black;
+	private long white;
+	private Player player;
+	private long zobristKey;
+	// Undo stack: the square played at each ply (-1 for a pass) and the pieces
+	// it captured
+	private final int[] playedSquares = new int[MAX_PLIES];
+	private final long[] flippedSquares = new long[MAX_PLIES];
+	private int ply;
+	private MoveListener listener;
+
+	/**
+	 * Creates a search position from the current state of a board.
+	 *
+	 * @param board
+	 *          The board whose pieces and current player should be copied.
+	 */
+	public SearchBoard(Board board) {
+		this.black = board.getBits(Player.BLACK);
+		this.white = board.getBits(Player.WHITE);
+		this.player = board.getCurrentPlayer();
+		this.zobristKey = board.getZobristKey();
+	}
+
+	/**
+	 * Creates a copy of the current position of another search board. The copy
+	 * starts with an empty undo stack and no {@link MoveListener}.
+	 *
+	 * @param other
+	 *          The search board to copy.
+	 */
+	public SearchBoard(SearchBoard other) {
+		this.black = other.black;
+		this.white = other.white;
+		this.player = other.player;
+		this.zobristKey = other.zobristKey;
+	}
+
+	/**
+	 * @return The player that gets to choose a square next.
+	 */
+	public Player getCurrentPlayer() {
+		return this.player;
+	}
+
+	/**
+	 * @return The Zobrist key of the current position, the same value
+	 *         {@link Board#getZobristKey()} gives for an equal position.
+	 */
+	public long getZobristKey() {
+		return this.zobristKey;
+	}
+
+	/**
+	 * @return The symmetry that maps the current position to its canonical form.
+	 *         See {@link Board#getCanonicalSymmetry()}.
+	 */
+	public Symmetry getCanonicalSymmetry() {
+		return Symmetry.canonical(this.black, this.white);
+	}
+
+	/**
+	 * @return The Zobrist key of the canonical form of the current position, the
+	 *         same value {@link Board#getCanonicalKey()} gives for any
+	 *         orientation of the position.
+	 */
+	public long getCanonicalKey() {
+		return Symmetry.canonicalKey(this.black, this.white, this.player);
+	}
+
+	/**
+	 * @return The bitboard of squares occupied by the given player. See
+	 *         {@link Bitboards} for the bit layout.
+	 */
+	public long getDiscs(Player owner) {
+		return owner == Player.BLACK ? this.black : this.white;
+	}
+
+	/**
+	 * @return The number of squares occupied by the given player.
+	 */
+	public int getSquareCount(Player owner) {
+		return Long.bitCount(this.getDiscs(owner));
+	}
+
+	/**
+	 * @return The number of squares not occupied by either player.
+	 */
+	public int getEmptyCount() {
+		return Long.bitCount(~(this.black | this.white));
+	}
+
+	/**
+	 * @return The bitboard of squares the current player may choose from.
+	 */
+	public long getPossibleMoves() {
+		return Bitboards.moves(this.getDiscs(this.player), this.getDiscs(this.player.opponent()));
+	}
+
+	/**
+	 * @return The number of squares the current player may choose from.
+	 */
+	public int getMobility() {
+		return Long.bitCount(this.getPossibleMoves());
+	}
+
+	/**
+	 * @return The number of squares the opponent of the current player could
+	 *         choose from if it were their turn.
+	 */
+	public int getOpponentMobility() {
+		return Long.bitCount(Bitboards.moves(this.getDiscs(this.player.opponent()), this.getDiscs(this.player)));
+	}
+
+	/**
+	 * @return True if no squares remain that can be played by either player, false
+	 *         otherwise.
+	 */
+	public boolean isComplete() {
+		long own = this.getDiscs(this.player);
+		long opponent = this.getDiscs(this.player.opponent());
+		return !Bitboards.hasMoves(own, opponent) && !Bitboards.hasMoves(opponent, own);
+	}
+
+	/**
+	 * @return The number of moves (including passes) that can currently be undone.
+	 */
+	public int getPly() {
+		return this.ply;
+	}
+
+	/**
+	 * @return The listener told about every move made and undone, or null.
+	 */
+	public MoveListener getListener() {
+		return this.listener;
+	}
+
+	/**
+	 * @param listener
+	 *          The listener to tell about every move made and undone from now
+	 *          on, or null for none.
+	 */
+	public void setListener(MoveListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Places a piece for the current player at the given square, or passes if
+	 * the square is {@link Square#PASS}.
+	 *
+	 * @param square
+	 *          The square where the current player places their piece.
+	 * @see #makeMove(int)
+	 */
+	public void makeMove(Square square) {
+		if (square.equals(Square.PASS)) {
+			this.pass();
+		} else {
+			int index = Bitboards.index(square);
+			if (index < 0) {
+				throw new IllegalArgumentException(String.format("%s is not on the board", square));
+			}
+			this.makeMove(index);
+		}
+	}
+
+	/**
+	 * Places a piece for the current player at the square with the given bit
+	 * index, captures the opponent pieces it brackets, and makes the opponent the
+	 * current player.
+	 *
+	 * @param index
+	 *          The bit index of the square (see {@link Bitboards}). Must be a
+	 *          valid play for the current player.
+	 * @return The pieces captured by the play.
+	 */
+	public long makeMove(int index) {
+		long placed = 1L << index;
+		long own = this.getDiscs(this.player);
+		long opponent = this.getDiscs(this.player.opponent());
+		long flips = ((own | opponent) & placed) != 0 ? 0L : Bitboards.flips(index, own, opponent);
+		if (flips == 0L) {
+			String message = "%s cannot play at %s";
+			throw new IllegalArgumentException(String.format(message, this.player, Bitboards.square(index)));
+		}
+		this.push(index, flips);
+		this.zobristKey ^= Zobrist.move(this.player, index, flips);
+		if (this.player == Player.BLACK) {
+			this.black = own | flips | placed;
+			this.white = opponent & ~flips;
+		} else {
+			this.white = own | flips | placed;
+			this.black = opponent & ~flips;
+		}
+		if (this.listener != null) {
+			this.listener.movePlayed(this.player, index, flips);
+		}
+		this.player = this.player.opponent();
+		return flips;
+	}
+
+	/**
+	 * Passes the current player's turn. Only valid when there are no possible
+	 * capturing moves for the current player.
+	 */
+	public void pass() {
+		if (Bitboards.hasMoves(this.getDiscs(this.player), this.getDiscs(this.player.opponent()))) {
+			throw new IllegalArgumentException(String.format("%s cannot pass since there are valid moves", this.player));
+		}
+		this.push(-1, 0L);
+		this.zobristKey ^= Zobrist.SIDE;
+		this.player = this.player.opponent();
+	}
+
+	/**
+	 * Reverts the most recent {@link #makeMove(int)} or {@link #pass()}.
+	 */
+	public void unmakeMove() {
+		if (this.ply == 0) {
+			throw new IllegalStateException("there are no moves to undo");
+		}
+		--this.ply;
+		int index = this.playedSquares[this.ply];
+		long flips = this.flippedSquares[this.ply];
+		this.player = this.player.opponent();
+		if (index < 0) {
+			this.zobristKey ^= Zobrist.SIDE;
+		} else {
+			this.zobristKey ^= Zobrist.move(this.player, index, flips);
+			long restored = flips | 1L << index;
+			if (this.player == Player.BLACK) {
+				this.black &= ~restored;
+				this.white |= flips;
+			} else {
+				this.white &= ~restored;
+				this.black |= flips;
+			}
+			if (this.listener != null) {
+				this.listener.moveUndone(this.player, index, flips);
+			}
+		}
+	}
+
+	private void push(int index, long flips) {
+		if (this.ply == MAX_PLIES) {
+			throw new IllegalStateException("too many moves to undo");
+		}
+		this.playedSquares[this.ply] = index;
+		this.flippedSquares[this.ply] = flips;
+		++this.ply;
+	}
+
+}
@@ -0,0 +1,55 @@
+package edu.miami.cse.reversi;
+
+/**
+ * Lets a {@link SearchingStrategy} report on its work while it chooses a
+ * square, and tells it when the game has stopped waiting for the answer.
+ * {@link Reversi} passes a new callback for every move.
+ */
+public interface SearchCallback {
+
+	/**
+	 * A callback that ignores all reports and is never cancelled, for calls made
+	 * outside a game.
+	 */
+	public static final SearchCallback NONE = new SearchCallback() {
+		@Override
+		public void addNodes(long nodes) {
+		}
+
+		@Override
+		public void setBestSquare(Square square) {
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+	};
+
+	/**
+	 * Adds to the number of positions searched for the current move. May be
+	 * called any number of times, from any thread.
+	 *
+	 * @param nodes
+	 *          The number of positions searched since the last report.
+	 */
+	public void addNodes(long nodes);
+
+	/**
+	 * Publishes the best square found so far. If the strategy runs out of time,
+	 * the game may play the last published square instead of forfeiting; see
+	 * {@link Reversi.TimeoutPolicy}. May be called any number of times, from any
+	 * thread, and should be cheap.
+	 *
+	 * @param square
+	 *          A square where the current player can play.
+	 */
+	public void setBestSquare(Square square);
+
+	/**
+	 * @return True once the game has stopped waiting for this move. The strategy
+	 *         should then return as soon as possible so its threads are free for
+	 *         the next move; its answer is ignored.
+	 */
+	public boolean isCancelled();
+}
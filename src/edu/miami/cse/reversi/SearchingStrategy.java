@@ -0,0 +1,20 @@
+package edu.miami.cse.reversi;
+
+/**
+ * A strategy that reports on its search through a {@link SearchCallback}.
+ * {@link Reversi} calls {@link #chooseSquare(Board, SearchCallback)} instead of
+ * {@link #chooseSquare(Board)} for such strategies.
+ */
+public interface SearchingStrategy extends Strategy {
+	/**
+	 * Determines where the current player should play their next piece, like
+	 * {@link Strategy#chooseSquare(Board)}.
+	 *
+	 * @param board
+	 *          The current state of the Reversi board.
+	 * @param callback
+	 *          Receives reports on the search for this move.
+	 * @return The square where the current player should play their next piece.
+	 */
+	public Square chooseSquare(Board board, SearchCallback callback);
+}
@@ -0,0 +1,303 @@
+package edu.miami.cse.reversi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.miami.cse.reversi.search.Evaluator;
+import edu.miami.cse.reversi.search.PatternEvaluator;
+import edu.miami.cse.reversi.search.PositionalEvaluator;
+import edu.miami.cse.reversi.strategy.IterativeDeepeningStrategy;
+
+/**
+ * Generates training positions for evaluation tuning by playing a strategy
+ * against itself. Each game starts with a few random moves, so games differ,
+ * and is then played out by {@link Reversi#play(Board)}. Every position where
+ * the player to move has a possible move is written with the final result of
+ * its game.
+ *
+ * Records are appended to a binary file: a header of the magic number
+ * {@link #MAGIC} and {@link #VERSION} as ints, then {@link #RECORD_BYTES}-byte
+ * records (big-endian) of the black pieces and white pieces as longs, the
+ * player to move (0 for black, 1 for white) as a byte, and the final number of
+ * black pieces minus white pieces as a signed byte. A file cut short by an
+ * interruption is trimmed to its last whole record and extended, so a run can
+ * be resumed by running it again.
+ *
+ * Usage: <code>SelfPlay file positions [--threads N] [--depth D]
+ * [--random-plies K] [--weights file] [--seed S]</code>
+ */
+public class SelfPlay {
+
+	/**
+	 * The first four bytes of a self-play file: "RVSP".
+	 */
+	public static final int MAGIC = 0x52565350;
+
+	/**
+	 * The file format version.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The number of bytes before the first record.
+	 */
+	public static final int HEADER_BYTES = 8;
+
+	/**
+	 * The number of bytes in each record.
+	 */
+	public static final int RECORD_BYTES = 18;
+
+	// Records collected by a worker before it writes them out
+	private static final int BATCH_RECORDS = 8192;
+
+	private Strategy strategy;
+	private int randomPlies;
+	private long timeout;
+	private TimeUnit timeoutUnit;
+	private final AtomicLong gamesPlayed = new AtomicLong();
+	private final AtomicLong gamesTimedOut = new AtomicLong();
+
+	/**
+	 * @param strategy
+	 *          The strategy playing both colors. It plays several games at once,
+	 *          so it must be thread-safe.
+	 * @param randomPlies
+	 *          The number of random moves at the start of each game.
+	 * @param timeout
+	 *          The maximum time allowed to the strategy for choosing a square.
+	 *          Games where it times out are discarded.
+	 * @param timeoutUnit
+	 *          The unit of the timeout
+	 */
+	public SelfPlay(Strategy strategy, int randomPlies, long timeout, TimeUnit timeoutUnit) {
+		this.strategy = strategy;
+		this.randomPlies = randomPlies;
+		this.timeout = timeout;
+		this.timeoutUnit = timeoutUnit;
+	}
+
+	/**
+	 * @return The number of records in a self-play file of the given size,
+	 *         ignoring a partial record at the end.
+	 */
+	public static long countRecords(long fileSize) {
+		return Math.max(0L, (fileSize - HEADER_BYTES) / RECORD_BYTES);
+	}
+
+	/**
+	 * Plays games until the file holds at least the given number of positions.
+	 * Records already in the file are kept.
+	 *
+	 * @param path
+	 *          The file to create or extend.
+	 * @param positions
+	 *          The number of positions the file should hold.
+	 * @param nThreads
+	 *          The number of games to play at the same time.
+	 * @param seed
+	 *          Seeds the random opening moves.
+	 * @return The number of positions in the file.
+	 * @throws IOException
+	 *           If the file cannot be written or is not a self-play file.
+	 * @throws ExecutionException
+	 *           If the strategy fails by throwing an exception or choosing an
+	 *           invalid square.
+	 */
+	public long run(Path path, final long positions, int nThreads, long seed)
+			throws IOException, InterruptedException, ExecutionException {
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		ExecutorService strategyExecutor = Reversi.newStrategyExecutor();
+		ExecutorService workers = Executors.newFixedThreadPool(nThreads);
+		try {
+			final AtomicLong written = new AtomicLong(open(path, channel));
+			// Resumed runs must not replay the same openings
+			long start = written.get();
+			List<Future<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < nThreads; ++i) {
+				final Random random = new Random(seed + 1000003L * start + i);
+				final ExecutorService executor = strategyExecutor;
+				futures.add(workers.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						generate(channel, written, positions, random, executor);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+			return written.get();
+		} finally {
+			workers.shutdownNow();
+			strategyExecutor.shutdownNow();
+			channel.close();
+		}
+	}
+
+	/**
+	 * @return The number of games played by {@link #run(Path, long, int, long)}.
+	 */
+	public long getGamesPlayed() {
+		return this.gamesPlayed.get();
+	}
+
+	/**
+	 * @return The number of games discarded because the strategy timed out.
+	 */
+	public long getGamesTimedOut() {
+		return this.gamesTimedOut.get();
+	}
+
+	/**
+	 * Writes the header of a new file, or checks the header of an existing file
+	 * and trims a partial record from its end, and moves to the end of the file.
+	 *
+	 * @return The number of records in the file.
+	 */
+	private static long open(Path path, FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		if (channel.size() == 0) {
+			header.putInt(MAGIC).putInt(VERSION).flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			return 0L;
+		}
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) {
+				break;
+			}
+		}
+		if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			throw new IOException(String.format("%s is not a self-play file", path));
+		}
+		long records = countRecords(channel.size());
+		channel.truncate(HEADER_BYTES + records * RECORD_BYTES);
+		channel.position(HEADER_BYTES + records * RECORD_BYTES);
+		return records;
+	}
+
+	private void generate(FileChannel channel, AtomicLong written, long positions, Random random,
+			ExecutorService executor) throws IOException {
+		ByteBuffer batch = ByteBuffer.allocate((BATCH_RECORDS + Bitboards.SQUARES) * RECORD_BYTES);
+		while (written.get() + batch.position() / RECORD_BYTES < positions) {
+			Board board = new Board();
+			for (int i = 0; i < this.randomPlies && !board.isComplete(); ++i) {
+				List<Square> squares = new ArrayList<>(board.getCurrentPossibleSquares());
+				board = squares.isEmpty() ? board.pass() : board.play(squares.get(random.nextInt(squares.size())));
+			}
+			try {
+				Reversi reversi = new Reversi(this.strategy, this.strategy, this.timeout, this.timeoutUnit, executor);
+				// A timed-out search would leave a weaker move in the training data
+				reversi.setTimeoutPolicy(Reversi.TimeoutPolicy.FORFEIT);
+				board = reversi.play(board);
+			} catch (StrategyTimedOutException e) {
+				this.gamesTimedOut.incrementAndGet();
+				continue;
+			}
+			this.gamesPlayed.incrementAndGet();
+			encode(board, batch);
+			if (batch.position() >= BATCH_RECORDS * RECORD_BYTES) {
+				write(channel, batch, written);
+			}
+		}
+		write(channel, batch, written);
+	}
+
+	/**
+	 * Adds a record to the batch for each position of a finished game where the
+	 * player to move had a possible move.
+	 */
+	private static void encode(Board finished, ByteBuffer batch) {
+		SearchBoard board = new SearchBoard(new Board());
+		List<Move> moves = finished.getMoves();
+		int differential = finished.getDiscDifferential(Player.BLACK);
+		for (Move move : moves) {
+			if (!move.getSquare().equals(Square.PASS)) {
+				batch.putLong(board.getDiscs(Player.BLACK));
+				batch.putLong(board.getDiscs(Player.WHITE));
+				batch.put((byte) board.getCurrentPlayer().ordinal());
+				batch.put((byte) differential);
+			}
+			board.makeMove(move.getSquare());
+		}
+	}
+
+	/**
+	 * Appends the batch to the file and empties it.
+	 */
+	private static void write(FileChannel channel, ByteBuffer batch, AtomicLong written) throws IOException {
+		batch.flip();
+		int records = batch.remaining() / RECORD_BYTES;
+		synchronized (channel) {
+			while (batch.hasRemaining()) {
+				channel.write(batch);
+			}
+		}
+		written.addAndGet(records);
+		batch.clear();
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> positional = new ArrayList<>();
+		int nThreads = Runtime.getRuntime().availableProcessors();
+		int depth = 4;
+		int randomPlies = 8;
+		Path weights = null;
+		long seed = 0L;
+		for (int i = 0; i < args.length; ++i) {
+			if (args[i].equals("--threads")) {
+				nThreads = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--depth")) {
+				depth = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--random-plies")) {
+				randomPlies = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--weights")) {
+				weights = Paths.get(args[++i]);
+			} else if (args[i].equals("--seed")) {
+				seed = Long.parseLong(args[++i]);
+			} else {
+				positional.add(args[i]);
+			}
+		}
+		if (positional.size() != 2) {
+			System.err.println(
+					"Usage: SelfPlay file positions [--threads N] [--depth D] [--random-plies K] [--weights file] [--seed S]");
+			System.exit(2);
+		}
+
+		Evaluator evaluator = weights == null ? new PositionalEvaluator() : PatternEvaluator.load(weights);
+		// The depth limit, not the clock, ends each search; the timeout only
+		// catches a stuck strategy
+		Strategy strategy = new IterativeDeepeningStrategy(10, TimeUnit.SECONDS, depth, evaluator, 12);
+		SelfPlay selfPlay = new SelfPlay(strategy, randomPlies, 10, TimeUnit.SECONDS);
+		Path path = Paths.get(positional.get(0));
+		long before = countRecords(path.toFile().length());
+		long start = System.nanoTime();
+		long total = selfPlay.run(path, Long.parseLong(positional.get(1)), nThreads, seed);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d positions (%d new) from %d games in %.1f s, %.0f positions/hour\n", total,
+				total - before, selfPlay.getGamesPlayed(), seconds, (total - before) / seconds * 3600);
+		if (selfPlay.getGamesTimedOut() > 0) {
+			System.out.printf("%d games discarded after timeouts\n", selfPlay.getGamesTimedOut());
+		}
+	}
+
+}
@@ -1,22 +1,33 @@
 package edu.miami.cse.reversi;
 
-import java.util.Objects;
-
 /**
  * A square on a Reversi board, identified by a row and a column. Rows and
  * columns typically start counting at 0.
+ *
+ * Squares are immutable. {@link #of(int, int)} returns a shared instance for
+ * every square of an 8x8 board, so code on the hot path need not allocate one.
  */
 public class Square {
 
+  private static final int SIZE = Bitboards.SIZE;
+  private static final Square[] SQUARES = new Square[SIZE * SIZE];
+  static {
+    for (int index = 0; index < SQUARES.length; ++index) {
+      SQUARES[index] = new Square(index / SIZE, index % SIZE);
+    }
+  }
+
   /**
    * A special Square for indicating that no piece was placed.
    */
   public static final Square PASS = new Square(-1, -1);
 
-  private int row, column;
+  private final int row, column;
+  private final int index;
 
   /**
    * Identifies a square on the Reversi board via the given row and column.
+   * Prefer {@link #of(int, int)}, which does not allocate.
    * 
    * @param row
    *          The row on the Reversi board.
@@ -26,6 +37,33 @@ public class Square {
   public Square(int row, int column) {
     this.row = row;
     this.column = column;
+    boolean onBoard = row >= 0 && row < SIZE && column >= 0 && column < SIZE;
+    this.index = onBoard ? row * SIZE + column : -1;
+  }
+
+  /**
+   * @param row
+   *          The row on the Reversi board.
+   * @param column
+   *          The column on the Reversi board.
+   * @return The square at the given row and column: a shared instance for
+   *         squares of an 8x8 board and for {@link #PASS}, and a new square
+   *         otherwise.
+   */
+  public static Square of(int row, int column) {
+    if (row >= 0 && row < SIZE && column >= 0 && column < SIZE) {
+      return SQUARES[row * SIZE + column];
+    }
+    return row == -1 && column == -1 ? PASS : new Square(row, column);
+  }
+
+  /**
+   * @param index
+   *          A bit index (see {@link Bitboards}), from 0 to 63.
+   * @return The shared square with the given index.
+   */
+  public static Square of(int index) {
+    return SQUARES[index];
   }
 
   /**
@@ -42,13 +80,26 @@ public class Square {
     return this.column;
   }
 
+  /**
+   * @return The position of this square in row-major order on an 8x8 board,
+   *         which is also its bit index (see {@link Bitboards}), or -1 if the
+   *         square is not on an 8x8 board.
+   */
+  public int getIndex() {
+    return this.index;
+  }
+
   @Override
   public int hashCode() {
-    return Objects.hash(this.row, this.column);
+    // The same value as Objects.hash(row, column), without boxing
+    return 31 * (31 + this.row) + this.column;
   }
 
   @Override
   public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
     if (obj instanceof Square) {
       Square that = (Square) obj;
       return this.row == that.row && this.column == that.column;
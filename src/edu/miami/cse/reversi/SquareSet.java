@@ -0,0 +1,65 @@
+package edu.miami.cse.reversi;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of squares backed by a bitboard. Intended only for internal
+ * use.
+ */
+class SquareSet extends AbstractSet<Square> {
+
+	private final long bits;
+
+	SquareSet(long bits) {
+		this.bits = bits;
+	}
+
+	@Override
+	public int size() {
+		return Long.bitCount(this.bits);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.bits == 0L;
+	}
+
+	@Override
+	public boolean contains(Object obj) {
+		if (obj instanceof Square) {
+			int index = Bitboards.index((Square) obj);
+			return index >= 0 && (this.bits & (1L << index)) != 0;
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<Square> iterator() {
+		return new Iterator<Square>() {
+			private long remaining = SquareSet.this.bits;
+
+			@Override
+			public boolean hasNext() {
+				return this.remaining != 0L;
+			}
+
+			@Override
+			public Square next() {
+				if (this.remaining == 0L) {
+					throw new NoSuchElementException();
+				}
+				int index = Long.numberOfTrailingZeros(this.remaining);
+				this.remaining &= this.remaining - 1;
+				return Bitboards.square(index);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+}
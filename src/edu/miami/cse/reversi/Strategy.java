@@ -11,7 +11,7 @@ public interface Strategy {
    * <li>{@link Board#getCurrentPossibleSquares()}</li>
    * <li>{@link Board#getCurrentPlayer()}</li>
    * <li>{@link Board#getSquareOwners()}</li>
-   * <li>{@link Board#getPlayerSquareCounts()}</li>
+   * <li>{@link Board#getSquareCount(Player)}</li>
    * </ul>
    * 
    * @param board
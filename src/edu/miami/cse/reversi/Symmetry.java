@@ -0,0 +1,166 @@
+package edu.miami.cse.reversi;
+
+/**
+ * The 8 symmetries of a square Reversi board: 4 rotations, each with or
+ * without a reflection. A position and its image under any symmetry have the
+ * same game-theoretic value, with moves mapped the same way.
+ *
+ * Bitboards (see {@link Bitboards}) are transformed with a few shifts and
+ * masks, without visiting individual squares.
+ */
+public enum Symmetry {
+	/**
+	 * Leaves every square in place.
+	 */
+	IDENTITY,
+	/**
+	 * Rotates clockwise by 90 degrees: (row, column) to (column, 7 - row).
+	 */
+	ROTATE_90,
+	/**
+	 * Rotates by 180 degrees: (row, column) to (7 - row, 7 - column).
+	 */
+	ROTATE_180,
+	/**
+	 * Rotates clockwise by 270 degrees: (row, column) to (7 - column, row).
+	 */
+	ROTATE_270,
+	/**
+	 * Reverses the order of the rows: (row, column) to (7 - row, column).
+	 */
+	FLIP_ROWS,
+	/**
+	 * Reverses the order of the columns: (row, column) to (row, 7 - column).
+	 */
+	FLIP_COLUMNS,
+	/**
+	 * Reflects in the main diagonal: (row, column) to (column, row).
+	 */
+	TRANSPOSE,
+	/**
+	 * Reflects in the other diagonal: (row, column) to (7 - column, 7 - row).
+	 */
+	ANTI_TRANSPOSE;
+
+	private static final Symmetry[] VALUES = values();
+
+	// The image of each bit index under each symmetry
+	private static final int[][] INDICES = new int[VALUES.length][Bitboards.SQUARES];
+	static {
+		for (Symmetry symmetry : VALUES) {
+			for (int index = 0; index < Bitboards.SQUARES; ++index) {
+				INDICES[symmetry.ordinal()][index] = Long.numberOfTrailingZeros(symmetry.apply(1L << index));
+			}
+		}
+	}
+
+	/**
+	 * @return The symmetry that undoes this one.
+	 */
+	public Symmetry inverse() {
+		switch (this) {
+			case ROTATE_90:
+				return ROTATE_270;
+			case ROTATE_270:
+				return ROTATE_90;
+			default:
+				return this;
+		}
+	}
+
+	/**
+	 * @return The image of a bitboard under this symmetry.
+	 */
+	public long apply(long bits) {
+		switch (this) {
+			case IDENTITY:
+				return bits;
+			case ROTATE_90:
+				return flipColumns(transpose(bits));
+			case ROTATE_180:
+				return Long.reverse(bits);
+			case ROTATE_270:
+				return Long.reverseBytes(transpose(bits));
+			case FLIP_ROWS:
+				return Long.reverseBytes(bits);
+			case FLIP_COLUMNS:
+				return flipColumns(bits);
+			case TRANSPOSE:
+				return transpose(bits);
+			case ANTI_TRANSPOSE:
+				return Long.reverse(transpose(bits));
+		}
+		throw new IllegalStateException("unexpected Symmetry: " + this);
+	}
+
+	/**
+	 * @return The image of a bit index under this symmetry.
+	 */
+	public int apply(int index) {
+		return INDICES[this.ordinal()][index];
+	}
+
+	/**
+	 * @return The image of a square under this symmetry. {@link Square#PASS} maps
+	 *         to itself.
+	 */
+	public Square apply(Square square) {
+		int index = Bitboards.index(square);
+		return index < 0 ? square : Bitboards.square(this.apply(index));
+	}
+
+	/**
+	 * Finds the symmetry that maps a position to its canonical form: the image
+	 * with the smallest black bitboard, then the smallest white bitboard. All 8
+	 * orientations of a position have the same canonical form.
+	 *
+	 * @return The symmetry whose image of the position is canonical.
+	 */
+	public static Symmetry canonical(long black, long white) {
+		Symmetry best = IDENTITY;
+		long bestBlack = black;
+		long bestWhite = white;
+		for (int i = 1; i < VALUES.length; ++i) {
+			long b = VALUES[i].apply(black);
+			if (b < bestBlack || b == bestBlack && VALUES[i].apply(white) < bestWhite) {
+				best = VALUES[i];
+				bestBlack = b;
+				bestWhite = VALUES[i].apply(white);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return The Zobrist key (see {@link Zobrist}) of the canonical form of a
+	 *         position. All 8 orientations of a position have the same canonical
+	 *         key.
+	 */
+	public static long canonicalKey(long black, long white, Player player) {
+		Symmetry symmetry = canonical(black, white);
+		return Zobrist.hash(symmetry.apply(black), symmetry.apply(white), player);
+	}
+
+	/**
+	 * Reverses the order of the bits within each row.
+	 */
+	private static long flipColumns(long x) {
+		x = x >>> 1 & 0x5555555555555555L | (x & 0x5555555555555555L) << 1;
+		x = x >>> 2 & 0x3333333333333333L | (x & 0x3333333333333333L) << 2;
+		return x >>> 4 & 0x0F0F0F0F0F0F0F0FL | (x & 0x0F0F0F0F0F0F0F0FL) << 4;
+	}
+
+	/**
+	 * Swaps rows and columns by exchanging ever smaller blocks across the main
+	 * diagonal.
+	 */
+	private static long transpose(long x) {
+		long t = 0x0F0F0F0F00000000L & (x ^ x << 28);
+		x ^= t ^ t >>> 28;
+		t = 0x3333000033330000L & (x ^ x << 14);
+		x ^= t ^ t >>> 14;
+		t = 0x5500550055005500L & (x ^ x << 7);
+		return x ^ t ^ t >>> 7;
+	}
+
+}
@@ -0,0 +1,211 @@
+package edu.miami.cse.reversi;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A round-robin tournament over Reversi strategies. Each round pairs every
+ * strategy with every other strategy twice, once as each color, so a
+ * tournament of N rounds over k strategies plays 2 * N * C(k,2) games.
+ *
+ * Games run in parallel on a fixed pool of worker threads, and all games share
+ * one executor for running strategies and, when pondering, one for ponders, so
+ * no threads are created per game. The same strategy objects play in several
+ * games at once, so strategies must be thread-safe.
+ */
+public class Tournament {
+
+	private List<Strategy> strategies;
+	private int nRounds;
+	private long timeout;
+	private TimeUnit timeoutUnit;
+	private int gamesPlayed;
+	private long elapsedNanos;
+	private GameRecord.Writer archive;
+	private MoveMetrics metrics;
+	private Reversi.TimeoutPolicy timeoutPolicy = Reversi.TimeoutPolicy.PLAY_BEST_SO_FAR;
+	private boolean pondering;
+
+	/**
+	 * @param strategies
+	 *          The strategies in the tournament.
+	 * @param nRounds
+	 *          The number of rounds to play.
+	 * @param timeout
+	 *          The maximum time allowed to a strategy for choosing a square.
+	 * @param timeoutUnit
+	 *          The unit of the timeout
+	 */
+	public Tournament(List<Strategy> strategies, int nRounds, long timeout, TimeUnit timeoutUnit) {
+		this.strategies = strategies;
+		this.nRounds = nRounds;
+		this.timeout = timeout;
+		this.timeoutUnit = timeoutUnit;
+	}
+
+	/**
+	 * @param archive
+	 *          Receives the moves of every finished game, or null to keep no
+	 *          record. Games lost by a timeout are not finished and not recorded.
+	 */
+	public void setArchive(GameRecord.Writer archive) {
+		this.archive = archive;
+	}
+
+	/**
+	 * @param timeoutPolicy
+	 *          What happens in every game when a strategy runs out of time. The
+	 *          default is {@link Reversi.TimeoutPolicy#PLAY_BEST_SO_FAR}.
+	 */
+	public void setTimeoutPolicy(Reversi.TimeoutPolicy timeoutPolicy) {
+		this.timeoutPolicy = timeoutPolicy;
+	}
+
+	/**
+	 * @param pondering
+	 *          True to let every {@link PonderingStrategy} search on its
+	 *          opponent's time; see {@link Reversi#setPondering(boolean)}.
+	 */
+	public void setPondering(boolean pondering) {
+		this.pondering = pondering;
+	}
+
+	/**
+	 * Plays every game of the tournament.
+	 *
+	 * @param nThreads
+	 *          The number of games to play at the same time.
+	 * @return The number of wins of each strategy. A strategy that times out
+	 *         without a square to play under the timeout policy loses the game;
+	 *         drawn games count for neither strategy.
+	 * @throws ExecutionException
+	 *           If a strategy fails by throwing an exception or choosing an
+	 *           invalid square.
+	 */
+	public Map<Strategy, Integer> run(int nThreads) throws InterruptedException, ExecutionException {
+		final Map<Strategy, AtomicInteger> wins = new ConcurrentHashMap<>();
+		for (Strategy strategy : this.strategies) {
+			wins.put(strategy, new AtomicInteger());
+		}
+
+		this.metrics = new MoveMetrics(this.timeout, this.timeoutUnit);
+		// Number strategies of the same class by their place in the list, so the
+		// metrics rows are told apart the same way in every run
+		for (int i = 0; i < this.strategies.size(); ++i) {
+			Class<?> type = this.strategies.get(i).getClass();
+			int number = 0;
+			int count = 0;
+			for (int j = 0; j < this.strategies.size(); ++j) {
+				if (this.strategies.get(j).getClass() == type) {
+					++count;
+					if (j <= i) {
+						++number;
+					}
+				}
+			}
+			if (count > 1) {
+				String name = type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName();
+				this.metrics.setName(this.strategies.get(i), name + "#" + number);
+			}
+		}
+		ExecutorService strategyExecutor = Reversi.newStrategyExecutor();
+		final ExecutorService ponderExecutor = this.pondering ? Reversi.newStrategyExecutor() : null;
+		List<Callable<Strategy>> games = Lists.newArrayList();
+		for (int round = 0; round < this.nRounds; ++round) {
+			for (int i = 0; i < this.strategies.size(); ++i) {
+				for (int j = i + 1; j < this.strategies.size(); ++j) {
+					games.add(this.newGame(this.strategies.get(i), this.strategies.get(j), strategyExecutor, ponderExecutor));
+					games.add(this.newGame(this.strategies.get(j), this.strategies.get(i), strategyExecutor, ponderExecutor));
+				}
+			}
+		}
+
+		long start = System.nanoTime();
+		ExecutorService workers = Executors.newFixedThreadPool(nThreads);
+		try {
+			List<Future<Strategy>> results = Lists.newArrayList();
+			for (Callable<Strategy> game : games) {
+				results.add(workers.submit(game));
+			}
+			for (Future<Strategy> result : results) {
+				Strategy winner = result.get();
+				if (winner != null) {
+					wins.get(winner).incrementAndGet();
+				}
+			}
+		} finally {
+			workers.shutdownNow();
+			strategyExecutor.shutdownNow();
+			if (ponderExecutor != null) {
+				ponderExecutor.shutdownNow();
+			}
+		}
+		this.elapsedNanos = System.nanoTime() - start;
+		this.gamesPlayed = games.size();
+
+		Map<Strategy, Integer> counts = Maps.newHashMap();
+		for (Map.Entry<Strategy, AtomicInteger> entry : wins.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+		return counts;
+	}
+
+	private Callable<Strategy> newGame(final Strategy black, final Strategy white, final ExecutorService executor,
+			final ExecutorService ponderExecutor) {
+		return new Callable<Strategy>() {
+			@Override
+			public Strategy call() throws Exception {
+				Reversi reversi = new Reversi(black, white, timeout, timeoutUnit, executor);
+				reversi.setMetrics(metrics);
+				reversi.setTimeoutPolicy(timeoutPolicy);
+				reversi.setPondering(pondering);
+				reversi.setPonderExecutor(ponderExecutor);
+				try {
+					Board board = reversi.play(new Board());
+					if (archive != null) {
+						archive.write(board);
+					}
+					return reversi.getWinner(board);
+				} catch (StrategyTimedOutException e) {
+					// If one of the strategies timed out, the opponent is considered the winner
+					return e.getOpponentStrategy();
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return The move times and search rates of every strategy in the last
+	 *         {@link #run(int)}, or null before the first run.
+	 */
+	public MoveMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * @return The number of games played by the last {@link #run(int)}.
+	 */
+	public int getGamesPlayed() {
+		return this.gamesPlayed;
+	}
+
+	/**
+	 * @return The number of games per second played by the last
+	 *         {@link #run(int)}.
+	 */
+	public double getGamesPerSecond() {
+		return this.gamesPlayed / (this.elapsedNanos / 1e9);
+	}
+
+}
@@ -0,0 +1,74 @@
+package edu.miami.cse.reversi;
+
+/**
+ * Zobrist keys for 8x8 Reversi positions. The key of a position is the XOR of
+ * one random 64-bit value per occupied (square, player) pair, XORed with
+ * {@link #SIDE} when {@link Player#WHITE} is to move. Because XOR is its own
+ * inverse, keys can be updated incrementally as pieces are placed and flipped.
+ *
+ * The random values come from a fixed seed, so keys are stable across runs and
+ * may be stored in files.
+ */
+public final class Zobrist {
+
+	/**
+	 * The value XORed into a key when {@link Player#WHITE} is to move.
+	 */
+	public static final long SIDE;
+
+	private static final long[] BLACK = new long[Bitboards.SQUARES];
+	private static final long[] WHITE = new long[Bitboards.SQUARES];
+	// BLACK[i] ^ WHITE[i]: the change in key when the piece at i changes owner
+	private static final long[] FLIP = new long[Bitboards.SQUARES];
+
+	static {
+		// SplitMix64, so the values do not depend on the JDK's Random
+		long state = 0x5EED0F0E11E11DL;
+		for (int index = 0; index < Bitboards.SQUARES; ++index) {
+			state += 0x9E3779B97F4A7C15L;
+			BLACK[index] = mix(state);
+			state += 0x9E3779B97F4A7C15L;
+			WHITE[index] = mix(state);
+			FLIP[index] = BLACK[index] ^ WHITE[index];
+		}
+		state += 0x9E3779B97F4A7C15L;
+		SIDE = mix(state);
+	}
+
+	private Zobrist() {
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return The key of the position with the given pieces and player to move.
+	 */
+	public static long hash(long black, long white, Player player) {
+		long key = player == Player.WHITE ? SIDE : 0L;
+		for (long bits = black; bits != 0; bits &= bits - 1) {
+			key ^= BLACK[Long.numberOfTrailingZeros(bits)];
+		}
+		for (long bits = white; bits != 0; bits &= bits - 1) {
+			key ^= WHITE[Long.numberOfTrailingZeros(bits)];
+		}
+		return key;
+	}
+
+	/**
+	 * @return The change in key when the given player places a piece at the given
+	 *         bit index, captures the given pieces, and passes the turn to the
+	 *         opponent. Applying the same change again reverts it.
+	 */
+	public static long move(Player player, int index, long flips) {
+		long key = SIDE ^ (player == Player.BLACK ? BLACK[index] : WHITE[index]);
+		for (long bits = flips; bits != 0; bits &= bits - 1) {
+			key ^= FLIP[Long.numberOfTrailingZeros(bits)];
+		}
+		return key;
+	}
+
+}
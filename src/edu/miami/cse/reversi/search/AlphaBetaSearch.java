@@ -0,0 +1,334 @@
+package edu.miami.cse.reversi.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.Player;
+import edu.miami.cse.reversi.SearchBoard;
+import edu.miami.cse.reversi.SearchCallback;
+
+/**
+ * A negamax alpha-beta search over {@link SearchBoard}s with a transposition
+ * table, principal variation search, and iterative deepening at the root.
+ *
+ * A search stops early once its deadline passes, {@link #stop()} is called or
+ * its {@link SearchCallback} is cancelled. The best move of the deepest
+ * finished iteration stays available through {@link #getBestMove()}, and is
+ * published to the callback whenever it changes, so a search can be cut off at
+ * any time.
+ *
+ * One instance serves one search thread. Several instances may share one
+ * {@link TranspositionTable}; callers should call
+ * {@link TranspositionTable#newSearch()} once before each move's search.
+ */
+public class AlphaBetaSearch {
+
+  /**
+   * The score of a won game before the final disc differential is added, so
+   * that every finished game scores beyond any {@link Evaluator} result.
+   */
+  public static final int WIN = 1 << 20;
+
+  private static final int INFINITY = WIN << 1;
+
+  // Nodes between deadline checks, minus one
+  private static final int CHECK_INTERVAL = 1023;
+
+  // Squares in the order moves are tried when the table has no best move:
+  // corners first, squares next to corners last
+  private static final int[] ORDER = new int[Bitboards.SQUARES];
+  static {
+    Integer[] indices = new Integer[Bitboards.SQUARES];
+    for (int index = 0; index < Bitboards.SQUARES; ++index) {
+      indices[index] = index;
+    }
+    Arrays.sort(indices, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return PositionalEvaluator.weight(b) - PositionalEvaluator.weight(a);
+      }
+    });
+    for (int index = 0; index < Bitboards.SQUARES; ++index) {
+      ORDER[index] = indices[index];
+    }
+  }
+
+  private final Evaluator evaluator;
+  private final TranspositionTable table;
+  private boolean timed;
+  private long deadline;
+  private volatile boolean stopped;
+  private SearchCallback callback = SearchCallback.NONE;
+  private long nodes;
+  private volatile int bestMove = TranspositionTable.NO_MOVE;
+  private int bestScore;
+  private int completedDepth;
+
+  /**
+   * @param evaluator
+   *          Scores the positions at the leaves of the search.
+   * @param table
+   *          Caches results between iterations, moves and threads.
+   */
+  public AlphaBetaSearch(Evaluator evaluator, TranspositionTable table) {
+    this.evaluator = evaluator;
+    this.table = table;
+  }
+
+  /**
+   * @param deadline
+   *          The {@link System#nanoTime()} after which the search should stop.
+   */
+  public void setDeadline(long deadline) {
+    this.timed = true;
+    this.deadline = deadline;
+  }
+
+  /**
+   * @param callback
+   *          Receives every new best root move, and stops the search when it is
+   *          cancelled. Checked as often as the deadline.
+   */
+  public void setCallback(SearchCallback callback) {
+    this.callback = callback;
+  }
+
+  /**
+   * Asks a running search to stop as soon as possible. May be called from any
+   * thread.
+   */
+  public void stop() {
+    this.stopped = true;
+  }
+
+  /**
+   * @return True if the search was stopped by its deadline or by
+   *         {@link #stop()}.
+   */
+  public boolean isStopped() {
+    return this.stopped;
+  }
+
+  /**
+   * @return The number of positions visited so far.
+   */
+  public long getNodes() {
+    return this.nodes;
+  }
+
+  /**
+   * @return The bit index of the best root move found so far, or
+   *         {@link TranspositionTable#NO_MOVE} before the first move has been
+   *         searched. May be called from any thread.
+   */
+  public int getBestMove() {
+    return this.bestMove;
+  }
+
+  /**
+   * @return The score of {@link #getBestMove()} from the point of view of the
+   *         player to move at the root.
+   */
+  public int getBestScore() {
+    return this.bestScore;
+  }
+
+  /**
+   * @return The depth of the deepest iteration that finished.
+   */
+  public int getCompletedDepth() {
+    return this.completedDepth;
+  }
+
+  /**
+   * Searches a position one ply deeper at a time until the deadline passes, the
+   * search is stopped, the maximum depth is reached, or the game is solved.
+   *
+   * @param board
+   *          The root position. The current player must have at least one
+   *          possible move. The board is restored before returning.
+   * @param maxDepth
+   *          The deepest iteration to run.
+   * @return The bit index of the best move found.
+   */
+  public int iterate(SearchBoard board, int maxDepth) {
+    return this.iterate(board, 1, maxDepth);
+  }
+
+  /**
+   * Like {@link #iterate(SearchBoard, int)}, but skips the iterations shallower
+   * than firstDepth. Helper threads sharing a table start at different depths
+   * so they do not all search the same tree.
+   */
+  public int iterate(SearchBoard board, int firstDepth, int maxDepth) {
+    long moves = board.getPossibleMoves();
+    int[] rootMoves = new int[Long.bitCount(moves)];
+    int count = 0;
+    for (int index : ORDER) {
+      if ((moves & 1L << index) != 0) {
+        rootMoves[count++] = index;
+      }
+    }
+    this.bestMove = rootMoves[0];
+    this.callback.setBestSquare(Bitboards.square(this.bestMove));
+    if (rootMoves.length == 1) {
+      return this.bestMove;
+    }
+    this.evaluator.prepare(board);
+    // With passes free of depth, this many plies reaches the end of every line
+    int solvedDepth = board.getEmptyCount();
+    for (int depth = firstDepth; depth <= maxDepth && !this.stopped; ++depth) {
+      this.searchRoot(board, rootMoves, depth);
+      if (depth >= solvedDepth) {
+        break;
+      }
+    }
+    return this.bestMove;
+  }
+
+  /**
+   * Runs one iteration at the root, moving the best move to the front of
+   * rootMoves so the next iteration searches it first.
+   */
+  private void searchRoot(SearchBoard board, int[] rootMoves, int depth) {
+    int alpha = -INFINITY;
+    int best = 0;
+    for (int i = 0; i < rootMoves.length; ++i) {
+      board.makeMove(rootMoves[i]);
+      int score;
+      if (i == 0) {
+        score = -this.search(board, depth - 1, -INFINITY, INFINITY);
+      } else {
+        score = -this.search(board, depth - 1, -alpha - 1, -alpha);
+        if (score > alpha && !this.stopped) {
+          score = -this.search(board, depth - 1, -INFINITY, -alpha);
+        }
+      }
+      board.unmakeMove();
+      if (this.stopped) {
+        break;
+      }
+      if (score > alpha) {
+        alpha = score;
+        best = i;
+        // A move that beats the previous best move is usable even from an
+        // unfinished iteration, since the previous best move was searched first
+        this.bestMove = rootMoves[i];
+        this.bestScore = score;
+        if (i > 0) {
+          this.callback.setBestSquare(Bitboards.square(this.bestMove));
+        }
+      }
+    }
+    int bestIndex = rootMoves[best];
+    System.arraycopy(rootMoves, 0, rootMoves, 1, best);
+    rootMoves[0] = bestIndex;
+    if (!this.stopped) {
+      this.completedDepth = depth;
+      this.table.store(board.getZobristKey(), depth, alpha, TranspositionTable.EXACT, bestIndex);
+    }
+  }
+
+  /**
+   * Negamax alpha-beta search. Passes do not use up depth. Callers other than
+   * {@link #iterate(SearchBoard, int, int)} should first pass the board to
+   * {@link Evaluator#prepare(SearchBoard)}.
+   *
+   * @return The score of the position for the player to move, or 0 if the
+   *         search was stopped.
+   */
+  public int search(SearchBoard board, int depth, int alpha, int beta) {
+    if ((++this.nodes & CHECK_INTERVAL) == 0
+        && (this.timed && System.nanoTime() - this.deadline > 0 || this.callback.isCancelled())) {
+      this.stopped = true;
+    }
+    if (this.stopped) {
+      return 0;
+    }
+    long moves = board.getPossibleMoves();
+    if (moves == 0L) {
+      if (board.getOpponentMobility() == 0) {
+        return finalScore(board);
+      }
+      board.pass();
+      int score = -this.search(board, depth, -beta, -alpha);
+      board.unmakeMove();
+      return score;
+    }
+    if (depth <= 0) {
+      return this.evaluator.evaluate(board);
+    }
+
+    long key = board.getZobristKey();
+    long entry = this.table.probe(key);
+    int tableMove = TranspositionTable.NO_MOVE;
+    if (entry != TranspositionTable.MISS) {
+      tableMove = TranspositionTable.move(entry);
+      if (TranspositionTable.depth(entry) >= depth) {
+        int score = TranspositionTable.score(entry);
+        int bound = TranspositionTable.bound(entry);
+        if (bound == TranspositionTable.EXACT
+            || bound == TranspositionTable.LOWER_BOUND && score >= beta
+            || bound == TranspositionTable.UPPER_BOUND && score <= alpha) {
+          return score;
+        }
+      }
+    }
+
+    int originalAlpha = alpha;
+    int bestScore = -INFINITY;
+    int bestMove = TranspositionTable.NO_MOVE;
+    boolean first = true;
+    for (int i = -1; i < ORDER.length; ++i) {
+      // The table's best move goes first, then the static order
+      int index = i < 0 ? tableMove : ORDER[i];
+      if (index == TranspositionTable.NO_MOVE || (moves & 1L << index) == 0) {
+        continue;
+      }
+      moves &= ~(1L << index);
+      board.makeMove(index);
+      int score;
+      if (first) {
+        score = -this.search(board, depth - 1, -beta, -alpha);
+        first = false;
+      } else {
+        score = -this.search(board, depth - 1, -alpha - 1, -alpha);
+        if (score > alpha && score < beta) {
+          score = -this.search(board, depth - 1, -beta, -alpha);
+        }
+      }
+      board.unmakeMove();
+      if (this.stopped) {
+        return 0;
+      }
+      if (score > bestScore) {
+        bestScore = score;
+        bestMove = index;
+        if (score > alpha) {
+          alpha = score;
+          if (alpha >= beta) {
+            break;
+          }
+        }
+      }
+    }
+
+    int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER_BOUND
+        : bestScore >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+    this.table.store(key, depth, bestScore, bound, bestMove);
+    return bestScore;
+  }
+
+  /**
+   * @return The score of a finished game for the player to move: beyond
+   *         {@link #WIN} for a win, beyond -{@link #WIN} for a loss, and 0 for a
+   *         draw, adjusted by the disc differential.
+   */
+  public static int finalScore(SearchBoard board) {
+    Player player = board.getCurrentPlayer();
+    int differential = board.getSquareCount(player) - board.getSquareCount(player.opponent());
+    return differential > 0 ? WIN + differential : differential < 0 ? -WIN + differential : 0;
+  }
+
+}
@@ -0,0 +1,407 @@
+package edu.miami.cse.reversi.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.Player;
+import edu.miami.cse.reversi.SearchBoard;
+import edu.miami.cse.reversi.SearchCallback;
+import edu.miami.cse.reversi.Square;
+
+/**
+ * Solves Reversi endgames exactly: finds the final disc differential under
+ * perfect play by both sides, and a move that achieves it.
+ *
+ * The search is a principal variation search to the end of the game: the
+ * first move at each node is searched with the full window and the rest with
+ * null windows. Moves are ordered fastest-first (fewest replies for the
+ * opponent), with ties broken towards regions of the board holding an odd
+ * number of empty squares, which tends to give the last move in each region.
+ * Near the end, where ordering costs more than it saves, only the parity order
+ * is used.
+ *
+ * Run {@link #main(String[])} to time the solver on 20-empty positions.
+ */
+public class EndgameSolver {
+
+  /**
+   * The number of empty squares at or below which solving is usually fast
+   * enough to replace a heuristic search.
+   */
+  public static final int DEFAULT_EMPTIES = 20;
+
+  // At or below this many empties, order by parity only
+  private static final int FASTEST_FIRST_EMPTIES = 5;
+  // At or above this many empties, use the transposition table
+  private static final int TABLE_EMPTIES = 7;
+  private static final int CHECK_INTERVAL = 4095;
+  private static final long[] QUADRANTS = { 0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L,
+      0xF0F0F0F000000000L };
+  private static final long CORNERS = 0x8100000000000081L;
+
+  private final TranspositionTable table;
+  // Per-empties move lists and sort keys, so ordering does not allocate
+  private final int[][] moveLists = new int[Bitboards.SQUARES + 1][Bitboards.SQUARES];
+  private final long[][] flipLists = new long[Bitboards.SQUARES + 1][Bitboards.SQUARES];
+  private final int[][] sortKeys = new int[Bitboards.SQUARES + 1][Bitboards.SQUARES];
+  private boolean timed;
+  private long deadline;
+  private volatile boolean stopped;
+  private SearchCallback callback = SearchCallback.NONE;
+  private long nodes;
+  private int score;
+
+  /**
+   * @param table
+   *          Caches results of positions with many empty squares. Keys are
+   *          private to the solver, so the table must not be shared with an
+   *          {@link AlphaBetaSearch}. May be null.
+   */
+  public EndgameSolver(TranspositionTable table) {
+    this.table = table;
+  }
+
+  /**
+   * @param deadline
+   *          The {@link System#nanoTime()} after which the solver should give
+   *          up.
+   */
+  public void setDeadline(long deadline) {
+    this.timed = true;
+    this.deadline = deadline;
+  }
+
+  /**
+   * @param callback
+   *          Receives every new best root move, and stops the solver when it is
+   *          cancelled. Checked as often as the deadline.
+   */
+  public void setCallback(SearchCallback callback) {
+    this.callback = callback;
+  }
+
+  /**
+   * Asks a running solver to stop as soon as possible. May be called from any
+   * thread.
+   */
+  public void stop() {
+    this.stopped = true;
+  }
+
+  /**
+   * @return True if the solver gave up because of its deadline or
+   *         {@link #stop()}. The results are then meaningless.
+   */
+  public boolean isStopped() {
+    return this.stopped;
+  }
+
+  /**
+   * @return The number of positions visited so far.
+   */
+  public long getNodes() {
+    return this.nodes;
+  }
+
+  /**
+   * @return The final disc differential, for the player to move, found by the
+   *         last {@link #findBestMove(SearchBoard)}.
+   */
+  public int getScore() {
+    return this.score;
+  }
+
+  /**
+   * Solves the position and finds a move that achieves the best final disc
+   * differential.
+   *
+   * @param board
+   *          The root position. The current player must have at least one
+   *          possible move.
+   * @return The bit index of the best move.
+   */
+  public int findBestMove(SearchBoard board) {
+    Player player = board.getCurrentPlayer();
+    long own = board.getDiscs(player);
+    long opponent = board.getDiscs(player.opponent());
+    int empties = Long.bitCount(~(own | opponent));
+    int count = this.orderMoves(own, opponent, empties, Bitboards.moves(own, opponent), TranspositionTable.NO_MOVE);
+    int[] moves = this.moveLists[empties];
+    long[] flips = this.flipLists[empties];
+    int alpha = -Bitboards.SQUARES - 1;
+    int bestMove = moves[0];
+    this.callback.setBestSquare(Bitboards.square(bestMove));
+    for (int i = 0; i < count && !this.stopped; ++i) {
+      long placed = 1L << moves[i];
+      long newOwn = own | flips[i] | placed;
+      long newOpponent = opponent & ~flips[i];
+      int value;
+      if (i == 0) {
+        value = -this.solve(newOpponent, newOwn, -Bitboards.SQUARES - 1, Bitboards.SQUARES + 1, false);
+      } else {
+        value = -this.solve(newOpponent, newOwn, -alpha - 1, -alpha, false);
+        if (value > alpha) {
+          value = -this.solve(newOpponent, newOwn, -Bitboards.SQUARES - 1, -alpha, false);
+        }
+      }
+      if (value > alpha && !this.stopped) {
+        alpha = value;
+        bestMove = moves[i];
+        this.callback.setBestSquare(Bitboards.square(bestMove));
+      }
+    }
+    this.score = alpha;
+    return bestMove;
+  }
+
+  /**
+   * Negamax search to the end of the game.
+   *
+   * @param board
+   *          The position to solve.
+   * @return The final disc differential for the player to move if it lies
+   *         strictly between alpha and beta; otherwise a bound on the same side
+   *         of the window as the true value. 0 if the solver was stopped.
+   */
+  public int solve(SearchBoard board, int alpha, int beta) {
+    Player player = board.getCurrentPlayer();
+    return this.solve(board.getDiscs(player), board.getDiscs(player.opponent()), alpha, beta, false);
+  }
+
+  /**
+   * Works directly on the bitboards of the player to move (own) and the other
+   * player, so no board object is touched per node.
+   *
+   * @param passed
+   *          True if the other player just passed.
+   */
+  private int solve(long own, long opponent, int alpha, int beta, boolean passed) {
+    if ((++this.nodes & CHECK_INTERVAL) == 0
+        && (this.timed && System.nanoTime() - this.deadline > 0 || this.callback.isCancelled())) {
+      this.stopped = true;
+    }
+    if (this.stopped) {
+      return 0;
+    }
+    long empty = ~(own | opponent);
+    int empties = Long.bitCount(empty);
+    if (empties == 1) {
+      return lastMove(own, opponent, Long.numberOfTrailingZeros(empty));
+    }
+    if (empties <= FASTEST_FIRST_EMPTIES) {
+      return this.solveShallow(own, opponent, empty, alpha, beta, passed);
+    }
+    long moves = Bitboards.moves(own, opponent);
+    if (moves == 0L) {
+      if (passed) {
+        return Long.bitCount(own) - Long.bitCount(opponent);
+      }
+      return -this.solve(opponent, own, -beta, -alpha, true);
+    }
+
+    long key = 0L;
+    int tableMove = TranspositionTable.NO_MOVE;
+    boolean useTable = this.table != null && empties >= TABLE_EMPTIES;
+    if (useTable) {
+      key = hash(own, opponent);
+      long entry = this.table.probe(key);
+      if (entry != TranspositionTable.MISS) {
+        tableMove = TranspositionTable.move(entry);
+        int value = TranspositionTable.score(entry);
+        int bound = TranspositionTable.bound(entry);
+        if (bound == TranspositionTable.EXACT
+            || bound == TranspositionTable.LOWER_BOUND && value >= beta
+            || bound == TranspositionTable.UPPER_BOUND && value <= alpha) {
+          return value;
+        }
+      }
+    }
+
+    int count = this.orderMoves(own, opponent, empties, moves, tableMove);
+    int[] moveList = this.moveLists[empties];
+    long[] flipList = this.flipLists[empties];
+    int originalAlpha = alpha;
+    int best = -Bitboards.SQUARES - 1;
+    int bestMove = TranspositionTable.NO_MOVE;
+    for (int i = 0; i < count; ++i) {
+      long newOwn = own | flipList[i] | 1L << moveList[i];
+      long newOpponent = opponent & ~flipList[i];
+      int value;
+      if (i == 0) {
+        value = -this.solve(newOpponent, newOwn, -beta, -alpha, false);
+      } else {
+        value = -this.solve(newOpponent, newOwn, -alpha - 1, -alpha, false);
+        if (value > alpha && value < beta) {
+          value = -this.solve(newOpponent, newOwn, -beta, -alpha, false);
+        }
+      }
+      if (this.stopped) {
+        return 0;
+      }
+      if (value > best) {
+        best = value;
+        bestMove = moveList[i];
+        if (value > alpha) {
+          alpha = value;
+          if (alpha >= beta) {
+            break;
+          }
+        }
+      }
+    }
+
+    if (useTable) {
+      int bound = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+          : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+      this.table.store(key, empties, best, bound, bestMove);
+    }
+    return best;
+  }
+
+  /**
+   * Solves positions with few empty squares: tries the empty squares in odd
+   * regions first, then the rest, without generating a move list.
+   */
+  private int solveShallow(long own, long opponent, long empty, int alpha, int beta, boolean passed) {
+    long odd = 0L;
+    for (long quadrant : QUADRANTS) {
+      if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+        odd |= quadrant;
+      }
+    }
+    int best = -Bitboards.SQUARES - 1;
+    for (int pass = 0; pass < 2; ++pass) {
+      for (long squares = empty & (pass == 0 ? odd : ~odd); squares != 0L; squares &= squares - 1) {
+        int index = Long.numberOfTrailingZeros(squares);
+        long flips = Bitboards.flips(index, own, opponent);
+        if (flips == 0L) {
+          continue;
+        }
+        int value = -this.solve(opponent & ~flips, own | flips | 1L << index, -beta, -alpha, false);
+        if (value > best) {
+          best = value;
+          if (value > alpha) {
+            alpha = value;
+            if (alpha >= beta) {
+              return best;
+            }
+          }
+        }
+      }
+    }
+    if (best == -Bitboards.SQUARES - 1) {
+      // No legal move
+      if (passed) {
+        return Long.bitCount(own) - Long.bitCount(opponent);
+      }
+      return -this.solve(opponent, own, -beta, -alpha, true);
+    }
+    return best;
+  }
+
+  /**
+   * @return The final disc differential for the player to move when a single
+   *         empty square remains.
+   */
+  private static int lastMove(long own, long opponent, int index) {
+    long flips = Bitboards.flips(index, own, opponent);
+    if (flips != 0L) {
+      return Long.bitCount(own) + 2 * Long.bitCount(flips) + 1 - Long.bitCount(opponent);
+    }
+    flips = Bitboards.flips(index, opponent, own);
+    if (flips != 0L) {
+      return Long.bitCount(own) - 2 * Long.bitCount(flips) - 1 - Long.bitCount(opponent);
+    }
+    return Long.bitCount(own) - Long.bitCount(opponent);
+  }
+
+  /**
+   * @return A table key for the position with the given pieces for the player
+   *         to move and the other player. Only used within this solver's table.
+   */
+  private static long hash(long own, long opponent) {
+    long key = own * 0x9E3779B97F4A7C15L + Long.rotateLeft(opponent * 0xC2B2AE3D27D4EB4FL, 31);
+    key = (key ^ (key >>> 29)) * 0xBF58476D1CE4E5B9L;
+    return key ^ (key >>> 32);
+  }
+
+  /**
+   * Fills moveLists[empties] and flipLists[empties] with the given moves, in
+   * search order, and the pieces each captures.
+   *
+   * @return The number of moves.
+   */
+  private int orderMoves(long own, long opponent, int empties, long moves, int firstMove) {
+    long empty = ~(own | opponent);
+    long oddRegions = 0L;
+    for (long quadrant : QUADRANTS) {
+      if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+        oddRegions |= quadrant;
+      }
+    }
+    int[] moveList = this.moveLists[empties];
+    long[] flipList = this.flipLists[empties];
+    int[] keys = this.sortKeys[empties];
+    int count = 0;
+    for (; moves != 0L; moves &= moves - 1) {
+      int index = Long.numberOfTrailingZeros(moves);
+      long placed = 1L << index;
+      long flips = Bitboards.flips(index, own, opponent);
+      int key;
+      if (index == firstMove) {
+        key = Integer.MIN_VALUE;
+      } else {
+        int replies = Long.bitCount(Bitboards.moves(opponent & ~flips, own | flips | placed));
+        key = replies * 4 + ((oddRegions & placed) != 0 ? 0 : 1) - ((CORNERS & placed) != 0 ? 2 : 0);
+      }
+      // Insertion sort by ascending key
+      int i = count++;
+      while (i > 0 && keys[i - 1] > key) {
+        keys[i] = keys[i - 1];
+        moveList[i] = moveList[i - 1];
+        flipList[i] = flipList[i - 1];
+        --i;
+      }
+      keys[i] = key;
+      moveList[i] = index;
+      flipList[i] = flips;
+    }
+    return count;
+  }
+
+  /**
+   * Solves a seeded set of positions with 20 empty squares and prints the time
+   * and node rate for each.
+   *
+   * Usage: <code>EndgameSolver [positions] [empties]</code>
+   */
+  public static void main(String[] args) {
+    int nPositions = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+    int empties = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_EMPTIES;
+    Random random = new Random(20);
+    List<Board> positions = new ArrayList<>();
+    while (positions.size() < nPositions) {
+      Board board = new Board();
+      while (!board.isComplete() && Bitboards.SQUARES - board.getSquareOwners().size() > empties) {
+        List<Square> squares = new ArrayList<>(board.getCurrentPossibleSquares());
+        board = squares.isEmpty() ? board.pass() : board.play(squares.get(random.nextInt(squares.size())));
+      }
+      if (!board.getCurrentPossibleSquares().isEmpty()) {
+        positions.add(board);
+      }
+    }
+    TranspositionTable table = new TranspositionTable(1 << 20);
+    for (Board board : positions) {
+      EndgameSolver solver = new EndgameSolver(table);
+      long start = System.nanoTime();
+      int move = solver.findBestMove(new SearchBoard(board));
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf("%s %+3d  %.2f s  %d nodes  %.0f nodes/s\n", Bitboards.square(move), solver.getScore(),
+          seconds, solver.getNodes(), solver.getNodes() / seconds);
+    }
+  }
+
+}
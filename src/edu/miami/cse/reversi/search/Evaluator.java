@@ -0,0 +1,39 @@
+package edu.miami.cse.reversi.search;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.SearchBoard;
+
+/**
+ * A static evaluation of Reversi positions, used at the leaves of a search.
+ */
+public interface Evaluator {
+  /**
+   * The largest magnitude of an evaluation, strictly below the scores of
+   * finished games (see {@link AlphaBetaSearch#WIN}).
+   */
+  public static final int MAX_SCORE = AlphaBetaSearch.WIN - Bitboards.SQUARES - 1;
+
+  /**
+   * Called on the root position before a search walks the tree from it.
+   * Evaluators that update their state incrementally attach it to the board
+   * here, for example as a {@link edu.miami.cse.reversi.MoveListener}.
+   * 
+   * @param board
+   *          The root position of the search.
+   */
+  public void prepare(SearchBoard board);
+
+  /**
+   * Estimates how good a position is for the player to move. Implementations
+   * are called at every leaf of a search, so they should not allocate.
+   * 
+   * @param board
+   *          The position to evaluate. Must not be modified.
+   * @return The score of the position from the point of view of
+   *         {@link SearchBoard#getCurrentPlayer()}: positive if that player is
+   *         ahead, negative if the opponent is ahead. Must lie within
+   *         +-{@link #MAX_SCORE}, so that no estimate is mistaken for a proven
+   *         win or loss.
+   */
+  public int evaluate(SearchBoard board);
+}
@@ -0,0 +1,165 @@
+package edu.miami.cse.reversi.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.SearchBoard;
+import edu.miami.cse.reversi.Square;
+
+/**
+ * A read-only opening book: the best known move for positions near the start
+ * of the game, stored in a binary file that is memory-mapped, so lookups read
+ * the file directly without loading or copying it.
+ *
+ * Positions are stored once per symmetry class. A position is looked up by
+ * its {@link SearchBoard#getCanonicalKey() canonical key}, and the stored
+ * move is mapped back to the orientation of the board asked about.
+ *
+ * File layout (big-endian): the magic number {@link #MAGIC}, the format
+ * {@link #VERSION}, and the number of entries, as ints; then the entries
+ * sorted by key, each a long key, a short score, a byte move (bit index in
+ * canonical orientation) and a byte search depth.
+ *
+ * A book may be shared by any number of threads.
+ */
+public class OpeningBook {
+
+  /**
+   * The first four bytes of a book file: "RVBK".
+   */
+  public static final int MAGIC = 0x5256424B;
+
+  /**
+   * The file format version written by {@link #write(Path, SortedMap)}.
+   */
+  public static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 12;
+  private static final int ENTRY_BYTES = 12;
+
+  private final MappedByteBuffer buffer;
+  private final int size;
+
+  private OpeningBook(MappedByteBuffer buffer, int size) {
+    this.buffer = buffer;
+    this.size = size;
+  }
+
+  /**
+   * Maps a book file into memory.
+   *
+   * @throws IOException
+   *           If the file cannot be read or is not a book file.
+   */
+  public static OpeningBook open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+        throw new IOException(String.format("%s is not an opening book", path));
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException(String.format("%s has unsupported version %d", path, buffer.getInt(4)));
+      }
+      int size = buffer.getInt(8);
+      if (buffer.capacity() != HEADER_BYTES + (long) size * ENTRY_BYTES) {
+        throw new IOException(String.format("%s is truncated", path));
+      }
+      // The mapping stays valid after the channel is closed
+      return new OpeningBook(buffer, size);
+    }
+  }
+
+  /**
+   * Writes a book file.
+   *
+   * @param entries
+   *          For each {@link SearchBoard#getCanonicalKey() canonical key}, the
+   *          entry packed by {@link #entry(int, int, int)}.
+   */
+  public static void write(Path path, SortedMap<Long, Long> entries) throws IOException {
+    try (OutputStream file = Files.newOutputStream(path);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(entries.size());
+      for (Map.Entry<Long, Long> entry : entries.entrySet()) {
+        long packed = entry.getValue();
+        output.writeLong(entry.getKey());
+        output.writeShort((int) (packed >>> 16));
+        output.writeByte((int) (packed >>> 8));
+        output.writeByte((int) packed);
+      }
+    }
+  }
+
+  /**
+   * @return A book entry for {@link #write(Path, SortedMap)}.
+   * @param move
+   *          The best move as a bit index, in canonical orientation.
+   * @param score
+   *          The search score of the move, clamped to a short.
+   * @param depth
+   *          The depth the move was searched to.
+   */
+  public static long entry(int move, int score, int depth) {
+    int clamped = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, score));
+    return (clamped & 0xFFFFL) << 16 | (move & 0xFF) << 8 | depth & 0xFF;
+  }
+
+  /**
+   * @return The number of positions in the book.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @return The book move for the position as a bit index, or -1 if the
+   *         position is not in the book.
+   */
+  public int findMove(SearchBoard board) {
+    long key = board.getCanonicalKey();
+    int low = 0;
+    int high = this.size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int offset = HEADER_BYTES + middle * ENTRY_BYTES;
+      long middleKey = this.buffer.getLong(offset);
+      if (middleKey < key) {
+        low = middle + 1;
+      } else if (middleKey > key) {
+        high = middle - 1;
+      } else {
+        // Guard against key collisions and corrupt files
+        int stored = this.buffer.get(offset + 10) & 0xFF;
+        if (stored >= Bitboards.SQUARES) {
+          return -1;
+        }
+        int move = board.getCanonicalSymmetry().inverse().apply(stored);
+        return (board.getPossibleMoves() & 1L << move) != 0 ? move : -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return The book move for the board, or null if the position is not in the
+   *         book.
+   */
+  public Square findSquare(Board board) {
+    int move = this.findMove(new SearchBoard(board));
+    return move < 0 ? null : Bitboards.square(move);
+  }
+
+}
@@ -0,0 +1,131 @@
+package edu.miami.cse.reversi.search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.SearchBoard;
+import edu.miami.cse.reversi.Symmetry;
+
+/**
+ * Builds an {@link OpeningBook} by searching every position reachable from the
+ * initial board in a few moves, one position per symmetry class, to a fixed
+ * depth.
+ *
+ * Usage: <code>OpeningBookBuilder file [plies] [depth] [threads]</code>
+ */
+public class OpeningBookBuilder {
+
+  /**
+   * The default number of moves from the initial board covered by the book.
+   */
+  public static final int DEFAULT_PLIES = 6;
+
+  /**
+   * The default search depth for each book position.
+   */
+  public static final int DEFAULT_DEPTH = 10;
+
+  private final int plies;
+  private final int depth;
+  private final TranspositionTable table = new TranspositionTable(1 << 22);
+
+  /**
+   * @param plies
+   *          The number of moves from the initial board covered by the book.
+   * @param depth
+   *          The depth each position is searched to.
+   */
+  public OpeningBookBuilder(int plies, int depth) {
+    this.plies = plies;
+    this.depth = depth;
+  }
+
+  /**
+   * @return One board for each symmetry class of positions reachable from the
+   *         initial board in fewer than {@link #plies} moves where the current
+   *         player has a move.
+   */
+  public List<SearchBoard> positions() {
+    List<SearchBoard> positions = new ArrayList<>();
+    Set<Long> seen = new HashSet<>();
+    List<SearchBoard> level = new ArrayList<>();
+    level.add(new SearchBoard(new Board()));
+    for (int ply = 0; ply < this.plies && !level.isEmpty(); ++ply) {
+      positions.addAll(level);
+      List<SearchBoard> next = new ArrayList<>();
+      for (SearchBoard board : level) {
+        for (long moves = board.getPossibleMoves(); moves != 0L; moves &= moves - 1) {
+          SearchBoard child = new SearchBoard(board);
+          child.makeMove(Long.numberOfTrailingZeros(moves));
+          if (child.getPossibleMoves() == 0L) {
+            if (child.getOpponentMobility() == 0) {
+              continue;
+            }
+            child.pass();
+          }
+          if (seen.add(child.getCanonicalKey())) {
+            next.add(child);
+          }
+        }
+      }
+      level = next;
+    }
+    return positions;
+  }
+
+  /**
+   * Searches each position on its own thread and writes the book.
+   */
+  public void build(Path path, int nThreads) throws IOException, InterruptedException, ExecutionException {
+    final ConcurrentSkipListMap<Long, Long> entries = new ConcurrentSkipListMap<>();
+    ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (final SearchBoard board : this.positions()) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            AlphaBetaSearch search = new AlphaBetaSearch(new PositionalEvaluator(), table);
+            int move = search.iterate(new SearchBoard(board), depth);
+            Symmetry symmetry = board.getCanonicalSymmetry();
+            entries.put(board.getCanonicalKey(), OpeningBook.entry(symmetry.apply(move), search.getBestScore(),
+                search.getCompletedDepth()));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    OpeningBook.write(path, entries);
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: OpeningBookBuilder file [plies] [depth] [threads]");
+      System.exit(2);
+    }
+    Path path = Paths.get(args[0]);
+    int plies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLIES;
+    int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+    int nThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    long start = System.nanoTime();
+    new OpeningBookBuilder(plies, depth).build(path, nThreads);
+    OpeningBook book = OpeningBook.open(path);
+    System.out.printf("%d positions in %.1f s\n", book.size(), (System.nanoTime() - start) / 1e9);
+  }
+
+}
@@ -0,0 +1,399 @@
+package edu.miami.cse.reversi.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.MoveListener;
+import edu.miami.cse.reversi.Player;
+import edu.miami.cse.reversi.SearchBoard;
+import edu.miami.cse.reversi.Symmetry;
+
+/**
+ * An evaluator that sums table weights for the contents of fixed groups of
+ * squares ("patterns"): each edge with its two X squares, the 3x3 and 2x5
+ * blocks at each corner, the second to fourth rows and columns from each edge,
+ * and the diagonals of length 4 to 8. Every rotation and reflection of a
+ * pattern shares one weight table, and there is a set of tables for each
+ * {@link #STAGES stage} of the game.
+ *
+ * A pattern's contents are encoded as a base-3 number with one digit per square
+ * (0 empty, 1 black, 2 white), which indexes its weight table directly. The
+ * weights are from black's point of view. {@link #prepare(SearchBoard)}
+ * attaches the encodings to the search board as a {@link MoveListener}, so
+ * makeMove and unmakeMove update them for the squares that changed and
+ * {@link #evaluate(SearchBoard)} only adds up table entries.
+ *
+ * Weights can be loaded from a binary file written by
+ * {@link #writeWeights(Path, short[][][])}: the magic number {@link #MAGIC},
+ * {@link #VERSION}, {@link #STAGES} and {@link #TYPES} as ints, then for each
+ * stage and pattern type the table of {@link #tableSize(int)} shorts
+ * (big-endian).
+ */
+public class PatternEvaluator implements Evaluator {
+
+  /**
+   * The first four bytes of a weight file: "RVPT".
+   */
+  public static final int MAGIC = 0x52565054;
+
+  /**
+   * The weight file format version.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The number of game stages with their own weights. The stage of a position
+   * is given by {@link #stage(int)}.
+   */
+  public static final int STAGES = 6;
+
+  private static final int[][] BASE_PATTERNS = {
+      { 0, 1, 2, 3, 4, 5, 6, 7, 9, 14 }, // edge + 2X
+      { 0, 1, 2, 8, 9, 10, 16, 17, 18 }, // corner 3x3
+      { 0, 1, 2, 3, 4, 8, 9, 10, 11, 12 }, // corner 2x5
+      { 8, 9, 10, 11, 12, 13, 14, 15 }, // second row
+      { 16, 17, 18, 19, 20, 21, 22, 23 }, // third row
+      { 24, 25, 26, 27, 28, 29, 30, 31 }, // fourth row
+      { 0, 9, 18, 27, 36, 45, 54, 63 }, // main diagonal
+      { 1, 10, 19, 28, 37, 46, 55 },
+      { 2, 11, 20, 29, 38, 47 },
+      { 3, 12, 21, 30, 39 },
+      { 4, 13, 22, 31 } };
+
+  /**
+   * The number of distinct pattern shapes, each with its own weight table.
+   */
+  public static final int TYPES = BASE_PATTERNS.length;
+
+  // Every placement of every pattern: its type and squares, in the order of the
+  // base pattern's squares
+  private static final int[] INSTANCE_TYPES;
+  private static final int[][] INSTANCE_SQUARES;
+  // For each square, the instances it belongs to and its digit's place value
+  private static final int[][] SQUARE_INSTANCES = new int[Bitboards.SQUARES][];
+  private static final int[][] SQUARE_POWERS = new int[Bitboards.SQUARES][];
+
+  static {
+    List<Integer> types = new ArrayList<>();
+    List<int[]> squares = new ArrayList<>();
+    for (int type = 0; type < TYPES; ++type) {
+      Set<Long> seen = new HashSet<>();
+      for (Symmetry symmetry : Symmetry.values()) {
+        int[] image = new int[BASE_PATTERNS[type].length];
+        long mask = 0L;
+        for (int i = 0; i < image.length; ++i) {
+          image[i] = symmetry.apply(BASE_PATTERNS[type][i]);
+          mask |= 1L << image[i];
+        }
+        if (seen.add(mask)) {
+          types.add(type);
+          squares.add(image);
+        }
+      }
+    }
+    INSTANCE_TYPES = new int[types.size()];
+    INSTANCE_SQUARES = squares.toArray(new int[squares.size()][]);
+    for (int i = 0; i < INSTANCE_TYPES.length; ++i) {
+      INSTANCE_TYPES[i] = types.get(i);
+    }
+    for (int index = 0; index < Bitboards.SQUARES; ++index) {
+      List<Integer> instances = new ArrayList<>();
+      List<Integer> powers = new ArrayList<>();
+      for (int i = 0; i < INSTANCE_SQUARES.length; ++i) {
+        int power = 1;
+        for (int square : INSTANCE_SQUARES[i]) {
+          if (square == index) {
+            instances.add(i);
+            powers.add(power);
+          }
+          power *= 3;
+        }
+      }
+      SQUARE_INSTANCES[index] = new int[instances.size()];
+      SQUARE_POWERS[index] = new int[powers.size()];
+      for (int k = 0; k < instances.size(); ++k) {
+        SQUARE_INSTANCES[index][k] = instances.get(k);
+        SQUARE_POWERS[index][k] = powers.get(k);
+      }
+    }
+  }
+
+  // For each stage, the weight tables of all pattern types back to back, so a
+  // lookup is a single array access
+  private final short[][] weights = new short[STAGES][];
+  // The offset of each instance's table in the stage's weights
+  private final int[] offsets = new int[INSTANCE_TYPES.length];
+
+  /**
+   * Creates an evaluator whose weights add up the
+   * {@link PositionalEvaluator#weight(int) positional weight} of each square.
+   * It is a placeholder until weights are fitted: without a mobility term it
+   * is weaker than {@link PositionalEvaluator}.
+   */
+  public PatternEvaluator() {
+    this(defaultWeights());
+  }
+
+  /**
+   * @param weights
+   *          The weight tables, indexed by stage, pattern type and encoded
+   *          contents.
+   */
+  public PatternEvaluator(short[][][] weights) {
+    if (weights.length != STAGES) {
+      throw new IllegalArgumentException(String.format("expected %d stages, found %d", STAGES, weights.length));
+    }
+    int[] typeOffsets = new int[TYPES + 1];
+    for (int type = 0; type < TYPES; ++type) {
+      typeOffsets[type + 1] = typeOffsets[type] + tableSize(type);
+    }
+    for (int stage = 0; stage < STAGES; ++stage) {
+      if (weights[stage].length != TYPES) {
+        throw new IllegalArgumentException(String.format("expected %d types, found %d", TYPES, weights[stage].length));
+      }
+      this.weights[stage] = new short[typeOffsets[TYPES]];
+      for (int type = 0; type < TYPES; ++type) {
+        if (weights[stage][type].length != tableSize(type)) {
+          String message = "expected %d weights for type %d, found %d";
+          throw new IllegalArgumentException(String.format(message, tableSize(type), type, weights[stage][type].length));
+        }
+        System.arraycopy(weights[stage][type], 0, this.weights[stage], typeOffsets[type], tableSize(type));
+      }
+    }
+    for (int i = 0; i < INSTANCE_TYPES.length; ++i) {
+      this.offsets[i] = typeOffsets[INSTANCE_TYPES[i]];
+    }
+  }
+
+  /**
+   * Creates an evaluator with the weights in a file written by
+   * {@link #writeWeights(Path, short[][][])}.
+   */
+  public static PatternEvaluator load(Path path) throws IOException {
+    return new PatternEvaluator(readWeights(path));
+  }
+
+  /**
+   * @return The number of weights for a pattern type: 3 to the number of its
+   *         squares.
+   */
+  public static int tableSize(int type) {
+    int size = 1;
+    for (int i = 0; i < BASE_PATTERNS[type].length; ++i) {
+      size *= 3;
+    }
+    return size;
+  }
+
+  /**
+   * @return The number of pattern placements on the board, counting each
+   *         rotation and reflection of a pattern type once.
+   */
+  public static int instances() {
+    return INSTANCE_TYPES.length;
+  }
+
+  /**
+   * @return The pattern type of a placement.
+   */
+  public static int type(int instance) {
+    return INSTANCE_TYPES[instance];
+  }
+
+  /**
+   * @return The stage of a position with the given number of empty squares,
+   *         from 0 at the start of the game to {@link #STAGES} - 1 at the end.
+   */
+  public static int stage(int empties) {
+    return Math.min(STAGES - 1, (Bitboards.SQUARES - 4 - empties) * STAGES / (Bitboards.SQUARES - 4));
+  }
+
+  /**
+   * Encodes the contents of every pattern placement.
+   *
+   * @param indices
+   *          Receives the encoding of each placement. Must hold
+   *          {@link #instances()} values.
+   */
+  public static void indices(long black, long white, int[] indices) {
+    for (int i = 0; i < INSTANCE_SQUARES.length; ++i) {
+      int index = 0;
+      int power = 1;
+      for (int square : INSTANCE_SQUARES[i]) {
+        index += ((black >>> square & 1L) != 0 ? 1 : (white >>> square & 1L) != 0 ? 2 : 0) * power;
+        power *= 3;
+      }
+      indices[i] = index;
+    }
+  }
+
+  /**
+   * Reads weight tables from a file written by
+   * {@link #writeWeights(Path, short[][][])}.
+   *
+   * @throws IOException
+   *           If the file cannot be read or does not hold weights for these
+   *           patterns.
+   */
+  public static short[][][] readWeights(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.capacity() < 16 || buffer.getInt(0) != MAGIC) {
+        throw new IOException(String.format("%s is not a pattern weight file", path));
+      }
+      if (buffer.getInt(4) != VERSION || buffer.getInt(8) != STAGES || buffer.getInt(12) != TYPES) {
+        throw new IOException(String.format("%s holds weights for different patterns", path));
+      }
+      buffer.position(16);
+      ShortBuffer shorts = buffer.asShortBuffer();
+      short[][][] weights = new short[STAGES][TYPES][];
+      for (int stage = 0; stage < STAGES; ++stage) {
+        for (int type = 0; type < TYPES; ++type) {
+          weights[stage][type] = new short[tableSize(type)];
+          if (shorts.remaining() < weights[stage][type].length) {
+            throw new IOException(String.format("%s is truncated", path));
+          }
+          shorts.get(weights[stage][type]);
+        }
+      }
+      return weights;
+    }
+  }
+
+  /**
+   * Writes weight tables, indexed by stage, pattern type and encoded contents,
+   * to a file.
+   */
+  public static void writeWeights(Path path, short[][][] weights) throws IOException {
+    try (OutputStream file = Files.newOutputStream(path);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(STAGES);
+      output.writeInt(TYPES);
+      for (short[][] stage : weights) {
+        for (short[] table : stage) {
+          for (short weight : table) {
+            output.writeShort(weight);
+          }
+        }
+      }
+    }
+  }
+
+  private static short[][][] defaultWeights() {
+    // Share each square's weight among the placements that cover it
+    int[] coverage = new int[Bitboards.SQUARES];
+    for (int[] squares : INSTANCE_SQUARES) {
+      for (int square : squares) {
+        ++coverage[square];
+      }
+    }
+    short[][][] weights = new short[STAGES][TYPES][];
+    for (int type = 0; type < TYPES; ++type) {
+      int[] squares = BASE_PATTERNS[type];
+      short[] table = new short[tableSize(type)];
+      for (int index = 0; index < table.length; ++index) {
+        double weight = 0.0;
+        for (int i = 0, digits = index; i < squares.length; ++i, digits /= 3) {
+          double share = (double) PositionalEvaluator.weight(squares[i]) / coverage[squares[i]];
+          weight += digits % 3 == 1 ? share : digits % 3 == 2 ? -share : 0.0;
+        }
+        table[index] = (short) Math.round(weight);
+      }
+      for (int stage = 0; stage < STAGES; ++stage) {
+        weights[stage][type] = table;
+      }
+    }
+    return weights;
+  }
+
+  @Override
+  public void prepare(SearchBoard board) {
+    MoveListener listener = board.getListener();
+    if (listener instanceof Indices) {
+      ((Indices) listener).reset(board);
+    } else {
+      board.setListener(new Indices(board));
+    }
+  }
+
+  @Override
+  public int evaluate(SearchBoard board) {
+    MoveListener listener = board.getListener();
+    int[] indices;
+    if (listener instanceof Indices) {
+      indices = ((Indices) listener).values;
+    } else {
+      // Not prepared: encode the patterns from scratch
+      indices = new int[INSTANCE_SQUARES.length];
+      indices(board.getDiscs(Player.BLACK), board.getDiscs(Player.WHITE), indices);
+    }
+    short[] weights = this.weights[stage(board.getEmptyCount())];
+    int[] offsets = this.offsets;
+    int score = 0;
+    for (int i = 0; i < indices.length; ++i) {
+      score += weights[offsets[i] + indices[i]];
+    }
+    // Extreme weights must not look like a finished game to the search
+    score = Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+    return board.getCurrentPlayer() == Player.BLACK ? score : -score;
+  }
+
+  /**
+   * The pattern encodings of a search board, kept up to date as moves are made
+   * and undone.
+   */
+  private static final class Indices implements MoveListener {
+    final int[] values = new int[INSTANCE_SQUARES.length];
+
+    Indices(SearchBoard board) {
+      this.reset(board);
+    }
+
+    void reset(SearchBoard board) {
+      indices(board.getDiscs(Player.BLACK), board.getDiscs(Player.WHITE), this.values);
+    }
+
+    @Override
+    public void movePlayed(Player player, int index, long flips) {
+      // Placing adds the player's digit; a flip turns 2 into 1 or 1 into 2
+      this.update(index, flips, player == Player.BLACK ? 1 : 2, player == Player.BLACK ? -1 : 1);
+    }
+
+    @Override
+    public void moveUndone(Player player, int index, long flips) {
+      this.update(index, flips, player == Player.BLACK ? -1 : -2, player == Player.BLACK ? 1 : -1);
+    }
+
+    private void update(int index, long flips, int placed, int flipped) {
+      int[] instances = SQUARE_INSTANCES[index];
+      int[] powers = SQUARE_POWERS[index];
+      for (int k = 0; k < instances.length; ++k) {
+        this.values[instances[k]] += placed * powers[k];
+      }
+      for (; flips != 0L; flips &= flips - 1) {
+        int square = Long.numberOfTrailingZeros(flips);
+        instances = SQUARE_INSTANCES[square];
+        powers = SQUARE_POWERS[square];
+        for (int k = 0; k < instances.length; ++k) {
+          this.values[instances[k]] += flipped * powers[k];
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,310 @@
+package edu.miami.cse.reversi.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.SelfPlay;
+
+/**
+ * Fits {@link PatternEvaluator} weights to the positions in a
+ * {@link SelfPlay} file by gradient descent on the squared error between the
+ * evaluation and the final disc difference of each position's game.
+ *
+ * The file is read in chunks through memory-mapped windows, so it may be much
+ * larger than the heap. Each chunk is split into batches, and each batch is
+ * split between worker threads that add up the gradient for their share of the
+ * positions. A weight's step is its average error over the batch positions
+ * where it appeared, shared equally with the other patterns of those
+ * positions, so rarely seen pattern contents learn as fast as common ones.
+ *
+ * Usage: <code>PatternTrainer positions weights [--epochs N] [--rate R]
+ * [--batch B] [--threads N] [--init weights]</code>
+ */
+public class PatternTrainer {
+
+  /**
+   * The number of weight units per disc in the written weights, so an
+   * evaluation of 64 means the player to move is expected to finish one disc
+   * ahead.
+   */
+  public static final int SCALE = 64;
+
+  // Records mapped at a time (72 MB)
+  private static final int CHUNK_RECORDS = 1 << 22;
+
+  private final int[] typeOffsets = new int[PatternEvaluator.TYPES + 1];
+  private final int[] offsets = new int[PatternEvaluator.instances()];
+  // For each stage, the weights of all pattern types back to back, in discs
+  private final float[][] weights;
+  // The summed gradient and count of each weight, of all stages back to back,
+  // and the weights seen in the current batch
+  private final float[] gradients;
+  private final int[] counts;
+  private final int[] touchedEntries;
+  private final int nThreads;
+  private final ExecutorService executor;
+  private final Worker[] workers;
+
+  /**
+   * @param nThreads
+   *          The number of threads sharing each batch.
+   */
+  public PatternTrainer(int nThreads) {
+    for (int type = 0; type < PatternEvaluator.TYPES; ++type) {
+      this.typeOffsets[type + 1] = this.typeOffsets[type] + PatternEvaluator.tableSize(type);
+    }
+    for (int i = 0; i < this.offsets.length; ++i) {
+      this.offsets[i] = this.typeOffsets[PatternEvaluator.type(i)];
+    }
+    this.weights = new float[PatternEvaluator.STAGES][this.typeOffsets[PatternEvaluator.TYPES]];
+    this.gradients = new float[PatternEvaluator.STAGES * this.typeOffsets[PatternEvaluator.TYPES]];
+    this.counts = new int[this.gradients.length];
+    this.touchedEntries = new int[this.gradients.length];
+    this.nThreads = nThreads;
+    this.executor = Executors.newFixedThreadPool(nThreads);
+    this.workers = new Worker[nThreads];
+    for (int i = 0; i < nThreads; ++i) {
+      this.workers[i] = new Worker();
+    }
+  }
+
+  /**
+   * Starts from previously fitted weights instead of zeros.
+   *
+   * @param weights
+   *          Weights as read by {@link PatternEvaluator#readWeights(Path)}.
+   */
+  public void setWeights(short[][][] weights) {
+    for (int stage = 0; stage < PatternEvaluator.STAGES; ++stage) {
+      for (int type = 0; type < PatternEvaluator.TYPES; ++type) {
+        for (int index = 0; index < weights[stage][type].length; ++index) {
+          this.weights[stage][this.typeOffsets[type] + index] = (float) weights[stage][type][index] / SCALE;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The fitted weights, in {@link #SCALE} units per disc, for
+   *         {@link PatternEvaluator#writeWeights(Path, short[][][])}.
+   */
+  public short[][][] getWeights() {
+    short[][][] weights = new short[PatternEvaluator.STAGES][PatternEvaluator.TYPES][];
+    for (int stage = 0; stage < PatternEvaluator.STAGES; ++stage) {
+      for (int type = 0; type < PatternEvaluator.TYPES; ++type) {
+        short[] table = new short[PatternEvaluator.tableSize(type)];
+        for (int index = 0; index < table.length; ++index) {
+          long weight = Math.round(this.weights[stage][this.typeOffsets[type] + index] * SCALE);
+          table[index] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, weight));
+        }
+        weights[stage][type] = table;
+      }
+    }
+    return weights;
+  }
+
+  /**
+   * Makes one pass over the positions in a self-play file.
+   *
+   * @param rate
+   *          The fraction of the average error to correct per batch, from 0
+   *          to 1.
+   * @param batchSize
+   *          The number of positions per weight update.
+   * @return The root-mean-square error, in discs, of the evaluations before
+   *         each update.
+   * @throws IOException
+   *           If the file cannot be read or is not a self-play file.
+   */
+  public double epoch(Path path, float rate, int batchSize) throws IOException, InterruptedException,
+      ExecutionException {
+    double squaredError = 0.0;
+    long positions;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(SelfPlay.HEADER_BYTES);
+      channel.read(header, 0);
+      if (header.getInt(0) != SelfPlay.MAGIC || header.getInt(4) != SelfPlay.VERSION) {
+        throw new IOException(String.format("%s is not a self-play file", path));
+      }
+      positions = SelfPlay.countRecords(channel.size());
+      for (long first = 0; first < positions; first += CHUNK_RECORDS) {
+        int records = (int) Math.min(CHUNK_RECORDS, positions - first);
+        long offset = SelfPlay.HEADER_BYTES + first * SelfPlay.RECORD_BYTES;
+        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+            (long) records * SelfPlay.RECORD_BYTES);
+        for (int start = 0; start < records; start += batchSize) {
+          squaredError += this.batch(chunk, start, Math.min(records, start + batchSize), rate);
+        }
+      }
+    }
+    return Math.sqrt(squaredError / Math.max(1L, positions));
+  }
+
+  /**
+   * Stops the worker threads.
+   */
+  public void shutdown() {
+    this.executor.shutdown();
+  }
+
+  /**
+   * Computes the gradient of records [start, end) of the chunk on the worker
+   * threads and updates the weights.
+   *
+   * @return The summed squared error of the records.
+   */
+  private double batch(final ByteBuffer chunk, int start, int end, float rate) throws InterruptedException,
+      ExecutionException {
+    List<Future<Double>> futures = new ArrayList<>();
+    int share = (end - start + this.nThreads - 1) / this.nThreads;
+    for (int i = 0; i < this.nThreads; ++i) {
+      final Worker worker = this.workers[i];
+      final int from = Math.min(end, start + i * share);
+      final int to = Math.min(end, from + share);
+      futures.add(this.executor.submit(new Callable<Double>() {
+        @Override
+        public Double call() {
+          return worker.accumulate(chunk, from, to);
+        }
+      }));
+    }
+    double squaredError = 0.0;
+    for (Future<Double> future : futures) {
+      squaredError += future.get();
+    }
+
+    // Only the weights seen in the batch change, so visit just those
+    int stride = this.typeOffsets[PatternEvaluator.TYPES];
+    int touched = 0;
+    for (Worker worker : this.workers) {
+      for (int k = 0; k < worker.touched; ++k) {
+        int entry = worker.touchedEntries[k];
+        if (this.counts[entry] == 0) {
+          this.touchedEntries[touched++] = entry;
+        }
+        this.gradients[entry] += worker.gradients[entry];
+        this.counts[entry] += worker.counts[entry];
+        worker.gradients[entry] = 0.0f;
+        worker.counts[entry] = 0;
+      }
+      worker.touched = 0;
+    }
+    // Every position's error is shared between all of its patterns
+    float step = rate / PatternEvaluator.instances();
+    for (int k = 0; k < touched; ++k) {
+      int entry = this.touchedEntries[k];
+      this.weights[entry / stride][entry % stride] -= step * this.gradients[entry] / this.counts[entry];
+      this.gradients[entry] = 0.0f;
+      this.counts[entry] = 0;
+    }
+    return squaredError;
+  }
+
+  /**
+   * One thread's gradient for the current batch, indexed like the weights of
+   * all stages back to back.
+   */
+  private final class Worker {
+    final float[] gradients = new float[PatternTrainer.this.gradients.length];
+    final int[] counts = new int[PatternTrainer.this.gradients.length];
+    final int[] touchedEntries = new int[PatternTrainer.this.gradients.length];
+    int touched;
+    final int[] indices = new int[PatternEvaluator.instances()];
+
+    /**
+     * Adds the error gradient of records [from, to) of the chunk.
+     *
+     * @return The summed squared error of the records.
+     */
+    double accumulate(ByteBuffer chunk, int from, int to) {
+      int stride = typeOffsets[PatternEvaluator.TYPES];
+      double squaredError = 0.0;
+      for (int record = from; record < to; ++record) {
+        int position = record * SelfPlay.RECORD_BYTES;
+        long black = chunk.getLong(position);
+        long white = chunk.getLong(position + 8);
+        int outcome = chunk.get(position + 17);
+        int stage = PatternEvaluator.stage(Bitboards.SQUARES - Long.bitCount(black | white));
+        PatternEvaluator.indices(black, white, this.indices);
+        float[] weights = PatternTrainer.this.weights[stage];
+        float evaluation = 0.0f;
+        for (int i = 0; i < this.indices.length; ++i) {
+          evaluation += weights[offsets[i] + this.indices[i]];
+        }
+        float error = evaluation - outcome;
+        squaredError += error * error;
+        for (int i = 0; i < this.indices.length; ++i) {
+          int entry = stage * stride + offsets[i] + this.indices[i];
+          if (this.counts[entry]++ == 0) {
+            this.touchedEntries[this.touched++] = entry;
+          }
+          this.gradients[entry] += error;
+        }
+      }
+      return squaredError;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<String> positional = new ArrayList<>();
+    int epochs = 10;
+    float rate = 0.5f;
+    int batchSize = 1 << 16;
+    int nThreads = Runtime.getRuntime().availableProcessors();
+    Path init = null;
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("--epochs")) {
+        epochs = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--rate")) {
+        rate = Float.parseFloat(args[++i]);
+      } else if (args[i].equals("--batch")) {
+        batchSize = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--threads")) {
+        nThreads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--init")) {
+        init = Paths.get(args[++i]);
+      } else {
+        positional.add(args[i]);
+      }
+    }
+    if (positional.size() != 2) {
+      System.err.println(
+          "Usage: PatternTrainer positions weights [--epochs N] [--rate R] [--batch B] [--threads N] [--init weights]");
+      System.exit(2);
+    }
+
+    Path positions = Paths.get(positional.get(0));
+    Path output = Paths.get(positional.get(1));
+    PatternTrainer trainer = new PatternTrainer(nThreads);
+    try {
+      if (init != null) {
+        trainer.setWeights(PatternEvaluator.readWeights(init));
+      }
+      long records = SelfPlay.countRecords(positions.toFile().length());
+      for (int epoch = 1; epoch <= epochs; ++epoch) {
+        long start = System.nanoTime();
+        double error = trainer.epoch(positions, rate, batchSize);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("epoch %d: rms error %.3f discs, %.0f positions/s\n", epoch, error, records / seconds);
+        // Write after every epoch so an interrupted run keeps its progress
+        PatternEvaluator.writeWeights(output, trainer.getWeights());
+      }
+    } finally {
+      trainer.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+package edu.miami.cse.reversi.search;
+
+import edu.miami.cse.reversi.Player;
+import edu.miami.cse.reversi.SearchBoard;
+
+/**
+ * A simple evaluator that scores each occupied square by a fixed weight
+ * (corners good, squares next to corners bad) and adds a bonus for having more
+ * possible moves than the opponent.
+ */
+public class PositionalEvaluator implements Evaluator {
+
+  private static final int[] WEIGHTS = {
+      100, -20, 10,  5,  5, 10, -20, 100,
+      -20, -50, -2, -2, -2, -2, -50, -20,
+       10,  -2, -1, -1, -1, -1,  -2,  10,
+        5,  -2, -1, -1, -1, -1,  -2,   5,
+        5,  -2, -1, -1, -1, -1,  -2,   5,
+       10,  -2, -1, -1, -1, -1,  -2,  10,
+      -20, -50, -2, -2, -2, -2, -50, -20,
+      100, -20, 10,  5,  5, 10, -20, 100 };
+
+  private static final int MOBILITY_WEIGHT = 5;
+
+  /**
+   * @return The weight of the square at the given bit index. Higher weights mark
+   *         squares that are better to own.
+   */
+  public static int weight(int index) {
+    return WEIGHTS[index];
+  }
+
+  @Override
+  public void prepare(SearchBoard board) {
+  }
+
+  @Override
+  public int evaluate(SearchBoard board) {
+    Player player = board.getCurrentPlayer();
+    int score = 0;
+    for (long bits = board.getDiscs(player); bits != 0; bits &= bits - 1) {
+      score += WEIGHTS[Long.numberOfTrailingZeros(bits)];
+    }
+    for (long bits = board.getDiscs(player.opponent()); bits != 0; bits &= bits - 1) {
+      score -= WEIGHTS[Long.numberOfTrailingZeros(bits)];
+    }
+    return score + MOBILITY_WEIGHT * (board.getMobility() - board.getOpponentMobility());
+  }
+
+}
@@ -0,0 +1,170 @@
+package edu.miami.cse.reversi.search;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size cache of search results keyed by Zobrist key (see
+ * {@link edu.miami.cse.reversi.Zobrist}). Entries live in two primitive arrays,
+ * so the table allocates nothing after construction.
+ *
+ * Each key maps to a bucket of two slots. The first slot keeps the deepest
+ * result from the current search; the second always takes the newest result.
+ *
+ * A table may be shared by several search threads without locking. Each slot
+ * stores its key XORed with its data, so a slot torn by concurrent writes fails
+ * the key check on probe and reads as a miss.
+ */
+public class TranspositionTable {
+
+  /**
+   * The stored score is the exact value of the position.
+   */
+  public static final int EXACT = 0;
+
+  /**
+   * The stored score is a lower bound: the search failed high.
+   */
+  public static final int LOWER_BOUND = 1;
+
+  /**
+   * The stored score is an upper bound: the search failed low.
+   */
+  public static final int UPPER_BOUND = 2;
+
+  /**
+   * The move stored with an entry that has no best move.
+   */
+  public static final int NO_MOVE = 64;
+
+  /**
+   * Returned by {@link #probe(long)} when the table holds no entry for a key.
+   */
+  public static final long MISS = 0L;
+
+  // Entry layout: score in bits 0-31, depth in 32-39, bound in 40-41, move in
+  // 42-48, generation in 49-56, and bit 63 always set so an entry is never MISS
+  private static final long VALID = 1L << 63;
+
+  private final long[] keys;
+  private final long[] data;
+  private final int mask;
+  private int generation;
+
+  /**
+   * Creates an empty table.
+   *
+   * @param entries
+   *          The minimum number of entries. Rounded up to a power of two, and
+   *          at least 2.
+   */
+  public TranspositionTable(int entries) {
+    int size = entries <= 2 ? 2 : Integer.highestOneBit(entries - 1) << 1;
+    this.keys = new long[size];
+    this.data = new long[size];
+    this.mask = (size - 1) & ~1;
+  }
+
+  /**
+   * @return The number of entries the table can hold.
+   */
+  public int capacity() {
+    return this.keys.length;
+  }
+
+  /**
+   * Marks the start of a new search. Entries from earlier searches may then be
+   * replaced by shallower ones.
+   */
+  public void newSearch() {
+    this.generation = (this.generation + 1) & 0xFF;
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void clear() {
+    Arrays.fill(this.keys, 0L);
+    Arrays.fill(this.data, 0L);
+  }
+
+  /**
+   * @param key
+   *          The Zobrist key of a position.
+   * @return The entry stored for the key, or {@link #MISS}. Use
+   *         {@link #score(long)}, {@link #depth(long)}, {@link #bound(long)}
+   *         and {@link #move(long)} to unpack it.
+   */
+  public long probe(long key) {
+    int bucket = (int) key & this.mask;
+    for (int slot = bucket; slot <= bucket + 1; ++slot) {
+      long entry = this.data[slot];
+      if ((this.keys[slot] ^ entry) == key && entry != MISS) {
+        return entry;
+      }
+    }
+    return MISS;
+  }
+
+  /**
+   * Stores a search result.
+   *
+   * @param key
+   *          The Zobrist key of the searched position.
+   * @param depth
+   *          The remaining depth the position was searched to, between 0 and
+   *          255.
+   * @param score
+   *          The score found by the search.
+   * @param bound
+   *          {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}.
+   * @param move
+   *          The bit index of the best move found, or {@link #NO_MOVE}.
+   */
+  public void store(long key, int depth, int score, int bound, int move) {
+    long entry = VALID | (long) this.generation << 49 | (long) move << 42 | (long) bound << 40
+        | (long) depth << 32 | score & 0xFFFFFFFFL;
+    int bucket = (int) key & this.mask;
+    long existing = this.data[bucket];
+    boolean sameKey = (this.keys[bucket] ^ existing) == key;
+    if (existing == MISS || sameKey || generation(existing) != this.generation || depth >= depth(existing)) {
+      this.keys[bucket] = key ^ entry;
+      this.data[bucket] = entry;
+    } else {
+      this.keys[bucket + 1] = key ^ entry;
+      this.data[bucket + 1] = entry;
+    }
+  }
+
+  /**
+   * @return The score of a probed entry.
+   */
+  public static int score(long entry) {
+    return (int) entry;
+  }
+
+  /**
+   * @return The remaining depth of a probed entry.
+   */
+  public static int depth(long entry) {
+    return (int) (entry >>> 32) & 0xFF;
+  }
+
+  /**
+   * @return The bound type of a probed entry.
+   */
+  public static int bound(long entry) {
+    return (int) (entry >>> 40) & 0x3;
+  }
+
+  /**
+   * @return The best move of a probed entry, or {@link #NO_MOVE}.
+   */
+  public static int move(long entry) {
+    return (int) (entry >>> 42) & 0x7F;
+  }
+
+  private static int generation(long entry) {
+    return (int) (entry >>> 49) & 0xFF;
+  }
+
+}
@@ -0,0 +1,57 @@
+package edu.miami.cse.reversi.strategy;
+
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.PonderingStrategy;
+import edu.miami.cse.reversi.SearchCallback;
+import edu.miami.cse.reversi.SearchingStrategy;
+import edu.miami.cse.reversi.Square;
+import edu.miami.cse.reversi.Strategy;
+import edu.miami.cse.reversi.search.OpeningBook;
+
+/**
+ * A strategy that plays the {@link OpeningBook} move when the position is in
+ * the book, and asks another strategy otherwise. Search reports of a
+ * {@link SearchingStrategy} fallback are passed on, and a
+ * {@link PonderingStrategy} fallback ponders outside the book.
+ */
+public class BookStrategy implements SearchingStrategy, PonderingStrategy {
+
+  private final OpeningBook book;
+  private final Strategy fallback;
+
+  /**
+   * @param book
+   *          The book to look positions up in.
+   * @param fallback
+   *          The strategy for positions that are not in the book.
+   */
+  public BookStrategy(OpeningBook book, Strategy fallback) {
+    this.book = book;
+    this.fallback = fallback;
+  }
+
+  @Override
+  public Square chooseSquare(Board board) {
+    return this.chooseSquare(board, SearchCallback.NONE);
+  }
+
+  @Override
+  public Square chooseSquare(Board board, SearchCallback callback) {
+    Square square = this.book.findSquare(board);
+    if (square != null) {
+      return square;
+    }
+    if (this.fallback instanceof SearchingStrategy) {
+      return ((SearchingStrategy) this.fallback).chooseSquare(board, callback);
+    }
+    return this.fallback.chooseSquare(board);
+  }
+
+  @Override
+  public void ponder(Board board, SearchCallback callback) {
+    if (this.fallback instanceof PonderingStrategy && this.book.findSquare(board) == null) {
+      ((PonderingStrategy) this.fallback).ponder(board, callback);
+    }
+  }
+
+}
@@ -29,7 +29,7 @@ public class GameProject5 implements Strategy {
             this.children = new ArrayList<>();
 
             // Set default value
-            this.optimal = new Square(-1, -1);
+            this.optimal = Square.PASS;
         }
 
         public Board getBoard() {
@@ -61,8 +61,27 @@ public class GameProject5 implements Strategy {
         }
     }
 
+    private final boolean streaming;
+
+    /*
+        Uses the streaming search, which never builds the decision tree.
+     */
+    public GameProject5() {
+        this(true);
+    }
+
+    /*
+        Chooses between the streaming search and the original decision tree search.
+     */
+    public GameProject5(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     @Override
     public Square chooseSquare(Board board) {
+        if (streaming) {
+            return chooseStreaming(board, 3);
+        }
         return chooseOne(board.getCurrentPossibleSquares(), board);
     }
 
@@ -71,7 +90,7 @@ public class GameProject5 implements Strategy {
      */
     public static int countFlips(Board simulated, Board current) {
         Player player = current.getCurrentPlayer();
-        return simulated.getPlayerSquareCounts().get(player) - current.getPlayerSquareCounts().get(player);
+        return simulated.getSquareCount(player) - current.getSquareCount(player);
     }
 
     /*
@@ -88,13 +107,12 @@ public class GameProject5 implements Strategy {
 
     public static int countTotal(Board simulated, Board current) {
         Player player = current.getCurrentPlayer();
-        return simulated.getPlayerSquareCounts().get(player) - (64 - simulated.getPlayerSquareCounts().get(player));
+        return simulated.getSquareCount(player) - (64 - simulated.getSquareCount(player));
     }
 
     public static int countRealTotal(Board simulated, Board current) {
         Player player = current.getCurrentPlayer();
-        int empty = 64 - simulated.getPlayerSquareCounts().get(Player.WHITE) - simulated.getPlayerSquareCounts().get(Player.BLACK);
-        return simulated.getPlayerSquareCounts().get(player) - (64 - simulated.getPlayerSquareCounts().get(player) - empty);
+        return simulated.getDiscDifferential(player);
     }
 
     public static int isBad(Square move){
@@ -223,12 +241,69 @@ public class GameProject5 implements Strategy {
         }
     }
 
+    /*
+        Performs alpha beta pruning without building the decision tree. Children are generated when they are
+        visited and dropped once scored, so only the boards along the current path are kept.
+        The value of a node is the heuristic of the move that led to it, as in createTree.
+     */
+    public static int alphabeta(Board board, int value, int depth, int alpha, int beta, boolean maxPlayer) {
+        if (depth == 0) {
+            return value;
+        }
+
+        ArrayList<Square> moves = getMoves(board);
+        if (moves.size() == 0) {
+            return value;
+        }
+
+        int best = maxPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (Square move : moves) {
+            Board child = board.play(move);
+            int tmp = alphabeta(child, heuristic(board, child, move), depth - 1, alpha, beta, !maxPlayer);
+
+            if (maxPlayer) {
+                best = Math.max(best, tmp);
+                alpha = Math.max(alpha, best);
+            } else {
+                best = Math.min(best, tmp);
+                beta = Math.min(beta, best);
+            }
+
+            if (beta <= alpha) {
+                break;
+            }
+        }
+
+        return best;
+    }
+
+    /*
+        Chooses the move with the highest alpha beta value, searching maxDepth moves ahead. Ties go to the
+        first such move in getMoves order.
+     */
+    public static Square chooseStreaming(Board board, int maxDepth) {
+        Square optimal = null;
+        int alpha = Integer.MIN_VALUE;
+
+        for (Square move : getMoves(board)) {
+            Board child = board.play(move);
+            int value = alphabeta(child, heuristic(board, child, move), maxDepth - 1, alpha, Integer.MAX_VALUE, false);
+
+            if (optimal == null || value > alpha) {
+                optimal = move;
+                alpha = value;
+            }
+        }
+
+        return optimal;
+    }
+
     /*
         Determines what the optimal decision based on a tree that has been processed by alpha beta pruning.
      */
     public static Square getOptimal(Node tree) {
         for (Node child : tree.getChildren()) {
-            if (!child.getOptimal().equals(new Square(-1, -1))) {
+            if (!child.getOptimal().equals(Square.PASS)) {
                 return child.getOptimal();
             }
         }
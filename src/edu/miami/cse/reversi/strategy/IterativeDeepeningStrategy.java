@@ -0,0 +1,153 @@
+package edu.miami.cse.reversi.strategy;
+
+import java.util.concurrent.TimeUnit;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.PonderingStrategy;
+import edu.miami.cse.reversi.SearchBoard;
+import edu.miami.cse.reversi.SearchCallback;
+import edu.miami.cse.reversi.SearchingStrategy;
+import edu.miami.cse.reversi.Square;
+import edu.miami.cse.reversi.search.AlphaBetaSearch;
+import edu.miami.cse.reversi.search.EndgameSolver;
+import edu.miami.cse.reversi.search.Evaluator;
+import edu.miami.cse.reversi.search.PositionalEvaluator;
+import edu.miami.cse.reversi.search.TranspositionTable;
+
+/**
+ * A strategy that runs an alpha-beta search one ply deeper at a time until
+ * most of the time allowed by {@link edu.miami.cse.reversi.Reversi} is used,
+ * then plays the best move of the deepest search. Each iteration searches the
+ * previous iteration's best moves first, so deeper iterations prune more.
+ *
+ * Once few enough squares are empty, the strategy first tries to solve the
+ * game exactly with an {@link EndgameSolver}, using up to half of its time, and
+ * plays a move with the best guaranteed final score. If the solver runs out of
+ * time, the remaining time goes to the alpha-beta search.
+ *
+ * The transposition tables are kept between moves and may be used by several
+ * games at once. The positions searched by both searches are reported to the
+ * game's {@link SearchCallback}, along with each new best move of the alpha-beta
+ * search, and both searches stop when the callback is cancelled.
+ *
+ * When pondering, the strategy searches the opponent's position without a
+ * deadline. The positions after the opponent's likely replies end up in the
+ * same transposition tables as the strategy's own search, so whichever reply
+ * is played, the next move starts from them.
+ */
+public class IterativeDeepeningStrategy implements SearchingStrategy, PonderingStrategy {
+
+  /**
+   * The default number of transposition table entries (16 MB).
+   */
+  public static final int TABLE_ENTRIES = 1 << 20;
+
+  /**
+   * The fraction of the timeout spent searching. The rest is left for thread
+   * scheduling and garbage collection so the strategy does not time out under
+   * load.
+   */
+  public static final double TIME_FRACTION = 0.75;
+
+  private final long searchNanos;
+  private final int maxDepth;
+  private final Evaluator evaluator;
+  private final TranspositionTable table;
+  private final int endgameEmpties;
+  private final TranspositionTable endgameTable;
+
+  /**
+   * Creates a strategy that uses the same timeout as the {@link edu.miami.cse.reversi.Reversi}
+   * game it plays in.
+   *
+   * @param timeout
+   *          The maximum time allowed to choose a square.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   */
+  public IterativeDeepeningStrategy(long timeout, TimeUnit timeoutUnit) {
+    this(timeout, timeoutUnit, Bitboards.SQUARES, new PositionalEvaluator());
+  }
+
+  /**
+   * @param timeout
+   *          The maximum time allowed to choose a square.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   * @param maxDepth
+   *          The deepest search to run, even if time remains.
+   * @param evaluator
+   *          Scores the positions at the leaves of the search.
+   */
+  public IterativeDeepeningStrategy(long timeout, TimeUnit timeoutUnit, int maxDepth, Evaluator evaluator) {
+    this(timeout, timeoutUnit, maxDepth, evaluator, EndgameSolver.DEFAULT_EMPTIES);
+  }
+
+  /**
+   * @param timeout
+   *          The maximum time allowed to choose a square.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   * @param maxDepth
+   *          The deepest search to run, even if time remains.
+   * @param evaluator
+   *          Scores the positions at the leaves of the search.
+   * @param endgameEmpties
+   *          The number of empty squares at or below which to try solving the
+   *          game exactly, or 0 to never use the endgame solver.
+   */
+  public IterativeDeepeningStrategy(long timeout, TimeUnit timeoutUnit, int maxDepth, Evaluator evaluator,
+      int endgameEmpties) {
+    this.searchNanos = (long) (timeoutUnit.toNanos(timeout) * TIME_FRACTION);
+    this.maxDepth = maxDepth;
+    this.evaluator = evaluator;
+    this.table = new TranspositionTable(TABLE_ENTRIES);
+    this.endgameEmpties = endgameEmpties;
+    this.endgameTable = endgameEmpties > 0 ? new TranspositionTable(TABLE_ENTRIES) : null;
+  }
+
+  @Override
+  public Square chooseSquare(Board board) {
+    return this.chooseSquare(board, SearchCallback.NONE);
+  }
+
+  @Override
+  public Square chooseSquare(Board board, SearchCallback callback) {
+    long start = System.nanoTime();
+    SearchBoard root = new SearchBoard(board);
+    if (root.getEmptyCount() <= this.endgameEmpties) {
+      EndgameSolver solver = new EndgameSolver(this.endgameTable);
+      solver.setDeadline(start + this.searchNanos / 2);
+      solver.setCallback(callback);
+      int move = solver.findBestMove(root);
+      callback.addNodes(solver.getNodes());
+      if (!solver.isStopped()) {
+        return Bitboards.square(move);
+      }
+    }
+    this.table.newSearch();
+    AlphaBetaSearch search = new AlphaBetaSearch(this.evaluator, this.table);
+    search.setDeadline(start + this.searchNanos);
+    search.setCallback(callback);
+    int move = search.iterate(root, this.maxDepth);
+    callback.addNodes(search.getNodes());
+    return Bitboards.square(move);
+  }
+
+  @Override
+  public void ponder(Board board, SearchCallback callback) {
+    SearchBoard root = new SearchBoard(board);
+    // One empty square fewer once the opponent has replied
+    if (root.getEmptyCount() - 1 <= this.endgameEmpties) {
+      EndgameSolver solver = new EndgameSolver(this.endgameTable);
+      solver.setCallback(callback);
+      solver.findBestMove(root);
+    } else {
+      AlphaBetaSearch search = new AlphaBetaSearch(this.evaluator, this.table);
+      search.setCallback(callback);
+      search.iterate(root, this.maxDepth);
+    }
+  }
+
+}
@@ -0,0 +1,657 @@
+package edu.miami.cse.reversi.strategy;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.GameRecord;
+import edu.miami.cse.reversi.Player;
+import edu.miami.cse.reversi.SearchBoard;
+import edu.miami.cse.reversi.SearchCallback;
+import edu.miami.cse.reversi.SearchingStrategy;
+import edu.miami.cse.reversi.Square;
+
+/**
+ * A Monte Carlo tree search strategy: it grows a game tree one node per
+ * playout, choosing the child with the best UCT score (win rate plus an
+ * exploration bonus for rarely tried moves) on the way down, finishes the game
+ * with uniformly random moves, and credits the result to every node on the
+ * path. When time is up it plays the most visited move.
+ *
+ * Each tree is a set of flat arrays indexed by node number, with the children
+ * of a node stored next to each other, so the tree holds no objects.
+ * Playouts work on a pair of bitboards and a xorshift generator and allocate
+ * nothing.
+ *
+ * Threads use root parallelization: every thread grows its own tree of the
+ * same position, and the visits of each root move are added up at the end.
+ * After a move, each tree keeps the subtree of the position that was actually
+ * reached, compacted to the front of its arrays, so the work on the expected
+ * replies carries over to the next move. Several games may use the strategy at
+ * once; each gets its own trees.
+ *
+ * The playouts of each move are reported as nodes to the game's
+ * {@link SearchCallback}, and the most visited move of the first tree is
+ * published as it changes. Run {@link #main(String[])} to measure playouts per
+ * second.
+ */
+public class MonteCarloStrategy implements SearchingStrategy {
+
+  /**
+   * The default number of nodes in each thread's tree (about 16 MB).
+   */
+  public static final int TREE_NODES = 1 << 19;
+
+  /**
+   * The weight of the exploration term in the UCT score, for win rates between
+   * 0 and 1.
+   */
+  public static final double EXPLORATION = 1.0;
+
+  private static final byte PASS = GameRecord.PASS;
+  // Playouts between deadline checks, minus one
+  private static final int CHECK_INTERVAL = 255;
+
+  private final long searchNanos;
+  private final int nThreads;
+  private final int treeNodes;
+  private final ExecutorService helpers;
+  // Trees not in use by any game
+  private final Queue<Forest> idle = new ConcurrentLinkedQueue<>();
+  private volatile long lastPlayouts;
+  private volatile long lastNanos;
+
+  /**
+   * @param timeout
+   *          The maximum time allowed to choose a square, as given to
+   *          {@link edu.miami.cse.reversi.Reversi}.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   */
+  public MonteCarloStrategy(long timeout, TimeUnit timeoutUnit) {
+    this(timeout, timeoutUnit, 1, TREE_NODES);
+  }
+
+  /**
+   * @param timeout
+   *          The maximum time allowed to choose a square, as given to
+   *          {@link edu.miami.cse.reversi.Reversi}.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   * @param nThreads
+   *          The number of playout threads, including the calling thread.
+   * @param treeNodes
+   *          The number of nodes in each thread's tree. A full tree stops
+   *          growing but keeps running playouts from its leaves.
+   */
+  public MonteCarloStrategy(long timeout, TimeUnit timeoutUnit, int nThreads, int treeNodes) {
+    this.searchNanos = (long) (timeoutUnit.toNanos(timeout) * IterativeDeepeningStrategy.TIME_FRACTION);
+    this.nThreads = nThreads;
+    this.treeNodes = treeNodes;
+    this.helpers = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "monte-carlo-helper");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  @Override
+  public Square chooseSquare(Board board) {
+    return this.chooseSquare(board, SearchCallback.NONE);
+  }
+
+  @Override
+  public Square chooseSquare(Board board, final SearchCallback callback) {
+    long start = System.nanoTime();
+    final long deadline = start + this.searchNanos;
+    SearchBoard root = new SearchBoard(board);
+    long moves = root.getPossibleMoves();
+    if (Long.bitCount(moves) == 1) {
+      return Bitboards.square(Long.numberOfTrailingZeros(moves));
+    }
+    Player player = root.getCurrentPlayer();
+    long own = root.getDiscs(player);
+    long opponent = root.getDiscs(player.opponent());
+    byte[] history = GameRecord.encode(board);
+
+    Forest forest = this.takeForest(history);
+    for (Tree tree : forest.trees) {
+      tree.reroot(forest.history, history, own, opponent);
+    }
+    forest.history = history;
+
+    List<Future<?>> running = new ArrayList<>();
+    for (int i = 1; i < this.nThreads; ++i) {
+      final Tree helper = forest.trees[i];
+      running.add(this.helpers.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          helper.search(deadline, callback, false);
+          return null;
+        }
+      }));
+    }
+    forest.trees[0].search(deadline, callback, true);
+    for (Tree tree : forest.trees) {
+      tree.stopped = true;
+    }
+    // The helpers are stopped and return within one playout, so wait for all
+    // of them even when interrupted; the forest must not be reused while a
+    // helper still grows one of its trees
+    boolean interrupted = false;
+    for (Future<?> future : running) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    long[] visits = new long[Bitboards.SQUARES];
+    long playouts = 0;
+    for (Tree tree : forest.trees) {
+      tree.addRootVisits(visits);
+      playouts += tree.playouts;
+    }
+    int best = Long.numberOfTrailingZeros(moves);
+    for (int index = 0; index < Bitboards.SQUARES; ++index) {
+      if (visits[index] > visits[best]) {
+        best = index;
+      }
+    }
+    this.idle.offer(forest);
+    this.lastPlayouts = playouts;
+    this.lastNanos = System.nanoTime() - start;
+    callback.addNodes(playouts);
+    return Bitboards.square(best);
+  }
+
+  /**
+   * @return Trees whose root position came earlier in the same game, if any
+   *         are idle, so their subtrees can be reused; otherwise any idle trees,
+   *         or new ones.
+   */
+  private Forest takeForest(byte[] history) {
+    for (Iterator<Forest> it = this.idle.iterator(); it.hasNext();) {
+      Forest forest = it.next();
+      if (isPrefix(forest.history, history) && this.idle.remove(forest)) {
+        return forest;
+      }
+    }
+    Forest forest = this.idle.poll();
+    return forest != null ? forest : new Forest(this.nThreads, this.treeNodes);
+  }
+
+  private static boolean isPrefix(byte[] prefix, byte[] history) {
+    if (prefix == null || prefix.length > history.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; ++i) {
+      if (prefix[i] != history[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The number of playouts run by all threads during the last
+   *         {@link #chooseSquare(Board)}.
+   */
+  public long getLastPlayouts() {
+    return this.lastPlayouts;
+  }
+
+  /**
+   * @return The playouts per second of the last {@link #chooseSquare(Board)}.
+   */
+  public double getLastPlayoutsPerSecond() {
+    return this.lastNanos == 0 ? 0.0 : this.lastPlayouts / (this.lastNanos / 1e9);
+  }
+
+  /**
+   * Stops the helper threads. The strategy must not be used afterwards.
+   */
+  public void shutdown() {
+    this.helpers.shutdownNow();
+  }
+
+  /**
+   * One tree per thread, and the moves that led to their root position.
+   */
+  private static final class Forest {
+    final Tree[] trees;
+    byte[] history;
+
+    Forest(int nThreads, int treeNodes) {
+      this.trees = new Tree[nThreads];
+      for (int i = 0; i < nThreads; ++i) {
+        this.trees[i] = new Tree(treeNodes, System.nanoTime() + i);
+      }
+    }
+  }
+
+  /**
+   * A search tree in flat arrays. Node 0 is the root. Each node stores the
+   * move that leads to it (a bit index, or {@link #PASS}), the index of its
+   * first child (-1 until expanded), its number of children, its visits, and
+   * its wins in half points (2 for a win, 1 for a draw) for the player who made
+   * the move.
+   */
+  private static final class Tree {
+    final int capacity;
+    byte[] moves;
+    int[] firstChild;
+    byte[] childCount;
+    int[] visits;
+    int[] halfWins;
+    // The spare arrays that the kept subtree is copied into between moves
+    byte[] spareMoves;
+    int[] spareFirstChild;
+    byte[] spareChildCount;
+    int[] spareVisits;
+    int[] spareHalfWins;
+    final int[] oldNodes;
+    int size;
+    long rootOwn;
+    long rootOpponent;
+    // The nodes from the root to the current leaf
+    final int[] path = new int[SearchBoard.MAX_PLIES + 1];
+    long random;
+    long playouts;
+    volatile boolean stopped;
+
+    Tree(int capacity, long seed) {
+      this.capacity = capacity;
+      this.moves = new byte[capacity];
+      this.firstChild = new int[capacity];
+      this.childCount = new byte[capacity];
+      this.visits = new int[capacity];
+      this.halfWins = new int[capacity];
+      this.spareMoves = new byte[capacity];
+      this.spareFirstChild = new int[capacity];
+      this.spareChildCount = new byte[capacity];
+      this.spareVisits = new int[capacity];
+      this.spareHalfWins = new int[capacity];
+      this.oldNodes = new int[capacity];
+      this.random = new Random(seed).nextLong() | 1L;
+    }
+
+    /**
+     * Makes the node of the current position the root, keeping its subtree, or
+     * starts a new tree if the position is not in the tree.
+     *
+     * @param rootHistory
+     *          The moves that led to the current root, or null if the tree is
+     *          new.
+     * @param history
+     *          The moves that led to the current position.
+     */
+    void reroot(byte[] rootHistory, byte[] history, long own, long opponent) {
+      this.stopped = false;
+      this.playouts = 0;
+      if (!isPrefix(rootHistory, history)) {
+        this.reset(own, opponent);
+        return;
+      }
+      int node = 0;
+      long mover = this.rootOwn;
+      long other = this.rootOpponent;
+      for (int i = rootHistory.length; i < history.length && node >= 0; ++i) {
+        node = this.child(node, history[i]);
+        if (history[i] != PASS) {
+          long flips = Bitboards.flips(history[i], mover, other);
+          mover |= flips | 1L << history[i];
+          other &= ~flips;
+        }
+        long swap = mover;
+        mover = other;
+        other = swap;
+      }
+      if (node < 0 || mover != own || other != opponent) {
+        this.reset(own, opponent);
+      } else if (node != 0) {
+        this.compact(node, own, opponent);
+      }
+    }
+
+    private void reset(long own, long opponent) {
+      this.size = 1;
+      this.firstChild[0] = -1;
+      this.childCount[0] = 0;
+      this.visits[0] = 0;
+      this.halfWins[0] = 0;
+      this.rootOwn = own;
+      this.rootOpponent = opponent;
+    }
+
+    /**
+     * @return The child of an expanded node reached by a move, or -1.
+     */
+    private int child(int node, byte move) {
+      int first = this.firstChild[node];
+      if (first < 0) {
+        return -1;
+      }
+      for (int child = first; child < first + this.childCount[node]; ++child) {
+        if (this.moves[child] == move) {
+          return child;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Copies the subtree of a node into the spare arrays in breadth-first
+     * order, so it becomes the whole tree with the node as root.
+     */
+    private void compact(int root, long own, long opponent) {
+      int size = 1;
+      this.oldNodes[0] = root;
+      for (int node = 0; node < size; ++node) {
+        int old = this.oldNodes[node];
+        this.spareMoves[node] = this.moves[old];
+        this.spareChildCount[node] = this.childCount[old];
+        this.spareVisits[node] = this.visits[old];
+        this.spareHalfWins[node] = this.halfWins[old];
+        int first = this.firstChild[old];
+        if (first < 0) {
+          this.spareFirstChild[node] = -1;
+        } else {
+          this.spareFirstChild[node] = size;
+          for (int child = first; child < first + this.childCount[old]; ++child) {
+            this.oldNodes[size++] = child;
+          }
+        }
+      }
+      byte[] moves = this.moves;
+      this.moves = this.spareMoves;
+      this.spareMoves = moves;
+      int[] firstChild = this.firstChild;
+      this.firstChild = this.spareFirstChild;
+      this.spareFirstChild = firstChild;
+      byte[] childCount = this.childCount;
+      this.childCount = this.spareChildCount;
+      this.spareChildCount = childCount;
+      int[] visits = this.visits;
+      this.visits = this.spareVisits;
+      this.spareVisits = visits;
+      int[] halfWins = this.halfWins;
+      this.halfWins = this.spareHalfWins;
+      this.spareHalfWins = halfWins;
+      this.size = size;
+      this.rootOwn = own;
+      this.rootOpponent = opponent;
+    }
+
+    /**
+     * Runs playouts until the deadline passes, the callback is cancelled or
+     * the tree is stopped.
+     *
+     * @param publish
+     *          True to publish the most visited root move to the callback.
+     */
+    void search(long deadline, SearchCallback callback, boolean publish) {
+      int published = -1;
+      while (!this.stopped) {
+        if ((this.playouts & CHECK_INTERVAL) == CHECK_INTERVAL) {
+          if (System.nanoTime() - deadline > 0 || callback.isCancelled()) {
+            break;
+          }
+          if (publish) {
+            int best = this.mostVisited();
+            if (best >= 0 && best != published) {
+              callback.setBestSquare(Bitboards.square(best));
+              published = best;
+            }
+          }
+        }
+        this.iterate();
+        ++this.playouts;
+      }
+    }
+
+    /**
+     * @return The root move with the most visits, or -1 if the root has not
+     *         been expanded.
+     */
+    private int mostVisited() {
+      int first = this.firstChild[0];
+      if (first < 0) {
+        return -1;
+      }
+      int best = first;
+      for (int child = first; child < first + this.childCount[0]; ++child) {
+        if (this.visits[child] > this.visits[best]) {
+          best = child;
+        }
+      }
+      return this.moves[best];
+    }
+
+    void addRootVisits(long[] totals) {
+      int first = this.firstChild[0];
+      if (first < 0) {
+        return;
+      }
+      for (int child = first; child < first + this.childCount[0]; ++child) {
+        totals[this.moves[child]] += this.visits[child];
+      }
+    }
+
+    /**
+     * Selects a leaf, expands it, runs one playout from it and adds the result
+     * to every node on the path.
+     */
+    private void iterate() {
+      long own = this.rootOwn;
+      long opponent = this.rootOpponent;
+      int node = 0;
+      int depth = 0;
+      this.path[0] = 0;
+      while (this.firstChild[node] >= 0) {
+        node = this.select(node);
+        int move = this.moves[node];
+        if (move != PASS) {
+          long flips = Bitboards.flips(move, own, opponent);
+          own |= flips | 1L << move;
+          opponent &= ~flips;
+        }
+        long swap = own;
+        own = opponent;
+        opponent = swap;
+        this.path[++depth] = node;
+      }
+      if (this.visits[node] > 0 && this.expand(node, own, opponent)) {
+        node = this.firstChild[node];
+        int move = this.moves[node];
+        if (move != PASS) {
+          long flips = Bitboards.flips(move, own, opponent);
+          own |= flips | 1L << move;
+          opponent &= ~flips;
+        }
+        long swap = own;
+        own = opponent;
+        opponent = swap;
+        this.path[++depth] = node;
+      }
+
+      // Half points for the player to move at the leaf, who did not make the
+      // move into it
+      int result = this.playout(own, opponent);
+      for (int d = depth; d >= 0; --d) {
+        int pathNode = this.path[d];
+        ++this.visits[pathNode];
+        this.halfWins[pathNode] += (depth - d) % 2 == 0 ? 2 - result : result;
+      }
+    }
+
+    /**
+     * @return The child with the best UCT score, or the first child that has
+     *         not been visited.
+     */
+    private int select(int node) {
+      int first = this.firstChild[node];
+      double logVisits = Math.log(this.visits[node]);
+      int best = first;
+      double bestScore = Double.NEGATIVE_INFINITY;
+      for (int child = first; child < first + this.childCount[node]; ++child) {
+        int visits = this.visits[child];
+        if (visits == 0) {
+          return child;
+        }
+        double score = this.halfWins[child] / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+        if (score > bestScore) {
+          bestScore = score;
+          best = child;
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Adds a child for every move of the player to move, or a single pass
+     * child if only the opponent can move.
+     *
+     * @return False if the game is over or the tree is full.
+     */
+    private boolean expand(int node, long own, long opponent) {
+      long moves = Bitboards.moves(own, opponent);
+      int count = Long.bitCount(moves);
+      if (count == 0) {
+        if (!Bitboards.hasMoves(opponent, own)) {
+          return false;
+        }
+        count = 1;
+      }
+      if (this.size + count > this.capacity) {
+        return false;
+      }
+      int first = this.size;
+      for (int child = first; child < first + count; ++child) {
+        this.moves[child] = moves == 0L ? PASS : (byte) Long.numberOfTrailingZeros(moves);
+        moves &= moves - 1;
+        this.firstChild[child] = -1;
+        this.childCount[child] = 0;
+        this.visits[child] = 0;
+        this.halfWins[child] = 0;
+      }
+      this.firstChild[node] = first;
+      this.childCount[node] = (byte) count;
+      this.size += count;
+      return true;
+    }
+
+    /**
+     * Plays uniformly random moves to the end of the game.
+     *
+     * @return 2 if the player to move at the start wins, 1 for a draw, 0 for a
+     *         loss.
+     */
+    private int playout(long own, long opponent) {
+      boolean swapped = false;
+      while (true) {
+        long moves = Bitboards.moves(own, opponent);
+        if (moves != 0L) {
+          int index = this.pick(moves);
+          long flips = Bitboards.flips(index, own, opponent);
+          own |= flips | 1L << index;
+          opponent &= ~flips;
+        } else if (!Bitboards.hasMoves(opponent, own)) {
+          break;
+        }
+        long swap = own;
+        own = opponent;
+        opponent = swap;
+        swapped = !swapped;
+      }
+      int differential = Long.bitCount(own) - Long.bitCount(opponent);
+      if (swapped) {
+        differential = -differential;
+      }
+      return differential > 0 ? 2 : differential < 0 ? 0 : 1;
+    }
+
+    /**
+     * @return The bit index of a random set bit of a non-zero mask.
+     */
+    private int pick(long mask) {
+      long x = this.random;
+      x ^= x << 13;
+      x ^= x >>> 7;
+      x ^= x << 17;
+      this.random = x;
+      int skip = (int) (((x >>> 32) * Long.bitCount(mask)) >>> 32);
+      for (; skip > 0; --skip) {
+        mask &= mask - 1;
+      }
+      return Long.numberOfTrailingZeros(mask);
+    }
+  }
+
+  /**
+   * Measures playouts per second with one thread and with N threads, over a
+   * set of midgame positions.
+   *
+   * Usage: <code>MonteCarloStrategy [threads] [millis]</code>
+   */
+  public static void main(String[] args) {
+    int nThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+
+    // Positions after 20 random moves, from a fixed seed
+    List<Board> positions = new ArrayList<>();
+    Random random = new Random(42);
+    while (positions.size() < 10) {
+      Board board = new Board();
+      while (!board.isComplete() && board.getMoves().size() < 20) {
+        List<Square> squares = new ArrayList<>(board.getCurrentPossibleSquares());
+        board = squares.isEmpty() ? board.pass() : board.play(squares.get(random.nextInt(squares.size())));
+      }
+      if (board.getCurrentPossibleSquares().size() > 1) {
+        positions.add(board);
+      }
+    }
+
+    int[] threadCounts = { 1, nThreads };
+    for (int run = 0; run < threadCounts.length; ++run) {
+      // The strategy searches for TIME_FRACTION of its timeout
+      long timeout = (long) (millis / IterativeDeepeningStrategy.TIME_FRACTION);
+      MonteCarloStrategy strategy = new MonteCarloStrategy(timeout, TimeUnit.MILLISECONDS, threadCounts[run],
+          TREE_NODES);
+      long playouts = 0;
+      long start = System.nanoTime();
+      for (Board board : positions) {
+        strategy.chooseSquare(board);
+        playouts += strategy.getLastPlayouts();
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      strategy.shutdown();
+      System.out.printf("%2d threads: %.0f playouts/s\n", threadCounts[run], playouts / seconds);
+    }
+  }
+
+}
@@ -0,0 +1,214 @@
+package edu.miami.cse.reversi.strategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.Board;
+import edu.miami.cse.reversi.Square;
+import edu.miami.cse.reversi.SearchBoard;
+import edu.miami.cse.reversi.SearchCallback;
+import edu.miami.cse.reversi.SearchingStrategy;
+import edu.miami.cse.reversi.search.AlphaBetaSearch;
+import edu.miami.cse.reversi.search.Evaluator;
+import edu.miami.cse.reversi.search.PositionalEvaluator;
+import edu.miami.cse.reversi.search.TranspositionTable;
+
+/**
+ * A multi-threaded version of {@link IterativeDeepeningStrategy} using "Lazy
+ * SMP": every thread runs its own iterative-deepening search of the same
+ * position, and all threads share one transposition table. Helper threads
+ * start at staggered depths, so they fill the table with results the other
+ * threads can use, and the move of the deepest finished iteration is played.
+ *
+ * Run {@link #main(String[])} to measure the speedup over a single thread.
+ */
+public class ParallelSearchStrategy implements SearchingStrategy {
+
+  private final long searchNanos;
+  private final int maxDepth;
+  private final int nThreads;
+  private final Evaluator evaluator;
+  private final TranspositionTable table;
+  private final ExecutorService helpers;
+  private volatile long lastNodes;
+  private volatile int lastDepth;
+
+  /**
+   * @param timeout
+   *          The maximum time allowed to choose a square, as given to
+   *          {@link edu.miami.cse.reversi.Reversi}.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   * @param nThreads
+   *          The number of search threads, including the calling thread.
+   */
+  public ParallelSearchStrategy(long timeout, TimeUnit timeoutUnit, int nThreads) {
+    this(timeout, timeoutUnit, nThreads, Bitboards.SQUARES);
+  }
+
+  /**
+   * @param timeout
+   *          The maximum time allowed to choose a square, as given to
+   *          {@link edu.miami.cse.reversi.Reversi}.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   * @param nThreads
+   *          The number of search threads, including the calling thread.
+   * @param maxDepth
+   *          The deepest search to run, even if time remains.
+   */
+  public ParallelSearchStrategy(long timeout, TimeUnit timeoutUnit, int nThreads, int maxDepth) {
+    this.searchNanos = (long) (timeoutUnit.toNanos(timeout) * IterativeDeepeningStrategy.TIME_FRACTION);
+    this.maxDepth = maxDepth;
+    this.nThreads = nThreads;
+    this.evaluator = new PositionalEvaluator();
+    this.table = new TranspositionTable(IterativeDeepeningStrategy.TABLE_ENTRIES);
+    this.helpers = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "parallel-search-helper");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  @Override
+  public Square chooseSquare(Board board) {
+    return this.chooseSquare(board, SearchCallback.NONE);
+  }
+
+  /**
+   * Searches on all threads and reports the positions visited by all of them.
+   * The calling thread's search publishes its best moves, and cancelling the
+   * callback stops every thread.
+   */
+  @Override
+  public Square chooseSquare(Board board, SearchCallback callback) {
+    long deadline = System.nanoTime() + this.searchNanos;
+    this.table.newSearch();
+    final SearchBoard root = new SearchBoard(board);
+    List<AlphaBetaSearch> searches = new ArrayList<>();
+    List<Future<?>> running = new ArrayList<>();
+    for (int i = 0; i < this.nThreads; ++i) {
+      searches.add(new AlphaBetaSearch(this.evaluator, this.table));
+      searches.get(i).setDeadline(deadline);
+    }
+    for (int i = 1; i < this.nThreads; ++i) {
+      final AlphaBetaSearch helper = searches.get(i);
+      final int firstDepth = 1 + i % 2;
+      running.add(this.helpers.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          helper.iterate(new SearchBoard(root), firstDepth, maxDepth);
+          return null;
+        }
+      }));
+    }
+
+    AlphaBetaSearch main = searches.get(0);
+    main.setCallback(callback);
+    main.iterate(root, this.maxDepth);
+    for (AlphaBetaSearch search : searches) {
+      search.stop();
+    }
+    for (Future<?> future : running) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    AlphaBetaSearch deepest = main;
+    long nodes = 0;
+    for (AlphaBetaSearch search : searches) {
+      nodes += search.getNodes();
+      if (search.getCompletedDepth() > deepest.getCompletedDepth()) {
+        deepest = search;
+      }
+    }
+    this.lastNodes = nodes;
+    callback.addNodes(nodes);
+    this.lastDepth = deepest.getCompletedDepth();
+    return Bitboards.square(deepest.getBestMove());
+  }
+
+  /**
+   * @return The number of positions visited by all threads during the last
+   *         {@link #chooseSquare(Board)}.
+   */
+  public long getLastNodes() {
+    return this.lastNodes;
+  }
+
+  /**
+   * @return The depth of the deepest search finished during the last
+   *         {@link #chooseSquare(Board)}.
+   */
+  public int getLastDepth() {
+    return this.lastDepth;
+  }
+
+  /**
+   * Stops the helper threads. The strategy must not be used afterwards.
+   */
+  public void shutdown() {
+    this.helpers.shutdownNow();
+  }
+
+  /**
+   * Measures the speedup from extra threads: the time to search a set of
+   * midgame positions to a fixed depth with one thread and with N threads.
+   *
+   * Usage: <code>ParallelSearchStrategy [threads] [depth]</code>
+   */
+  public static void main(String[] args) {
+    int nThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    int depth = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+
+    // Positions after 20 random moves, from a fixed seed
+    List<Board> positions = new ArrayList<>();
+    Random random = new Random(42);
+    while (positions.size() < 10) {
+      Board board = new Board();
+      while (!board.isComplete() && board.getMoves().size() < 20) {
+        List<Square> squares = new ArrayList<>(board.getCurrentPossibleSquares());
+        board = squares.isEmpty() ? board.pass() : board.play(squares.get(random.nextInt(squares.size())));
+      }
+      if (!board.getCurrentPossibleSquares().isEmpty()) {
+        positions.add(board);
+      }
+    }
+
+    double[] seconds = new double[2];
+    int[] threadCounts = { 1, nThreads };
+    for (int run = 0; run < threadCounts.length; ++run) {
+      ParallelSearchStrategy strategy = new ParallelSearchStrategy(1, TimeUnit.DAYS, threadCounts[run], depth);
+      long nodes = 0;
+      long start = System.nanoTime();
+      for (Board board : positions) {
+        strategy.chooseSquare(board);
+        nodes += strategy.getLastNodes();
+      }
+      seconds[run] = (System.nanoTime() - start) / 1e9;
+      strategy.shutdown();
+      System.out.printf("%2d threads: %.2f s to depth %d, %.0f nodes/s\n", threadCounts[run], seconds[run], depth,
+          nodes / seconds[run]);
+    }
+    System.out.printf("speedup: %.2fx\n", seconds[0] / seconds[1]);
+  }
+
+}
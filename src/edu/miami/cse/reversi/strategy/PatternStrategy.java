@@ -0,0 +1,52 @@
+package edu.miami.cse.reversi.strategy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import edu.miami.cse.reversi.Bitboards;
+import edu.miami.cse.reversi.search.PatternEvaluator;
+
+/**
+ * An {@link IterativeDeepeningStrategy} that evaluates positions with pattern
+ * weights fitted by {@link edu.miami.cse.reversi.search.PatternTrainer},
+ * loaded from a file when the strategy is created.
+ */
+public class PatternStrategy extends IterativeDeepeningStrategy {
+
+  /**
+   * The weight file used when none is given.
+   */
+  public static final Path DEFAULT_WEIGHTS = Paths.get("pattern-weights.bin");
+
+  /**
+   * Creates a strategy with the weights in {@link #DEFAULT_WEIGHTS}.
+   *
+   * @param timeout
+   *          The maximum time allowed to choose a square.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   * @throws IOException
+   *           If the weights cannot be read.
+   */
+  public PatternStrategy(long timeout, TimeUnit timeoutUnit) throws IOException {
+    this(DEFAULT_WEIGHTS, timeout, timeoutUnit);
+  }
+
+  /**
+   * @param weights
+   *          A file written by
+   *          {@link PatternEvaluator#writeWeights(Path, short[][][])}.
+   * @param timeout
+   *          The maximum time allowed to choose a square.
+   * @param timeoutUnit
+   *          The unit of the timeout.
+   * @throws IOException
+   *           If the weights cannot be read.
+   */
+  public PatternStrategy(Path weights, long timeout, TimeUnit timeoutUnit) throws IOException {
+    super(timeout, timeoutUnit, Bitboards.SQUARES, PatternEvaluator.load(weights));
+  }
+
+}